@@ -0,0 +1,47 @@
+package org.vaadin.addons.tatu.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vaadin.addons.tatu.ColorPicker.CaptionMode;
+import org.vaadin.addons.tatu.ColorPicker.ColorPreset;
+
+/**
+ * Construction of a {@link ColorPreset} with TEXT and HTML captions. With
+ * unique captions every HTML caption is sanitized, otherwise the sanitizer
+ * cache is hit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ColorPresetBenchmark {
+
+    private static final String CAPTION = "<span style=\"font-weight: bold\">"
+            + "Signal</span> red";
+
+    @Param({ "TEXT", "HTML" })
+    public CaptionMode captionMode;
+
+    @Param({ "false", "true" })
+    public boolean unique;
+
+    private int counter;
+
+    @Benchmark
+    public ColorPreset construct() {
+        String caption = unique ? CAPTION + counter++ : CAPTION;
+        return new ColorPreset("#ff0000", caption, captionMode);
+    }
+}
@@ -0,0 +1,79 @@
+package org.vaadin.addons.tatu.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vaadin.addons.tatu.ColorPicker;
+import org.vaadin.addons.tatu.ColorPicker.CaptionMode;
+import org.vaadin.addons.tatu.ColorPicker.ColorPreset;
+
+import com.vaadin.flow.internal.JsonSerializer;
+
+/**
+ * JSON serialization of presets done by
+ * {@link ColorPicker#setPresets(List)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PresetsBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    public int size;
+
+    private List<ColorPreset> presets;
+    private ColorPicker colorPicker;
+
+    @Setup
+    public void setup() {
+        presets = createPresets(size);
+        colorPicker = new ColorPicker();
+    }
+
+    @Benchmark
+    public ColorPicker setPresets() {
+        colorPicker.setPresets(presets);
+        return colorPicker;
+    }
+
+    @Benchmark
+    public Object toJson() {
+        return JsonSerializer.toJson(presets);
+    }
+
+    /**
+     * Create presets with distinct colors, every tenth with HTML caption.
+     *
+     * @param size
+     *            Number of presets.
+     * @return List of ColorPreset.
+     */
+    static List<ColorPreset> createPresets(int size) {
+        List<ColorPreset> presets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String color = String.format("#%06x", (i * 2654435761L) & 0xffffff);
+            if (i % 10 == 0) {
+                presets.add(new ColorPreset(color, "<b>Color</b> " + i,
+                        CaptionMode.HTML));
+            } else {
+                presets.add(new ColorPreset(color, "Color " + i));
+            }
+        }
+        return presets;
+    }
+}
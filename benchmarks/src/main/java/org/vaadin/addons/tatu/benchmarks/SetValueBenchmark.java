@@ -0,0 +1,54 @@
+package org.vaadin.addons.tatu.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vaadin.addons.tatu.ColorPicker;
+
+/**
+ * Validation done by {@link ColorPicker#setValue(String)}. The values
+ * alternate, so that every call results in a value change.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SetValueBenchmark {
+
+    private static final String[] VALUES = { "#ff0000", "#00FF00" };
+
+    private ColorPicker colorPicker;
+    private int index;
+
+    @Setup
+    public void setup() {
+        colorPicker = new ColorPicker();
+    }
+
+    @Benchmark
+    public ColorPicker setValue() {
+        colorPicker.setValue(VALUES[index++ & 1]);
+        return colorPicker;
+    }
+
+    @Benchmark
+    public Object setValue_invalid() {
+        try {
+            colorPicker.setValue("#ff00zz");
+            return colorPicker;
+        } catch (IllegalArgumentException e) {
+            return e;
+        }
+    }
+}
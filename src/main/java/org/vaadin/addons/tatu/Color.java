@@ -0,0 +1,202 @@
+package org.vaadin.addons.tatu;
+
+import java.io.Serializable;
+
+/**
+ * An immutable RGBA color value. The channels are packed to a single int in
+ * 0xAARRGGBB order, so colors can be stored and compared as primitives.
+ */
+public final class Color implements Serializable {
+
+    private final int argb;
+
+    // Lazily computed hex string, same benign race as String.hashCode
+    private transient String hex;
+
+    private Color(int argb) {
+        this.argb = argb;
+    }
+
+    /**
+     * Create opaque color from packed int.
+     *
+     * @param rgb
+     *            Color in 0xRRGGBB format, the highest byte is ignored.
+     * @return Color
+     */
+    public static Color of(int rgb) {
+        return new Color(0xff000000 | rgb);
+    }
+
+    /**
+     * Create color from packed int including alpha.
+     *
+     * @param argb
+     *            Color in 0xAARRGGBB format.
+     * @return Color
+     */
+    public static Color ofArgb(int argb) {
+        return new Color(argb);
+    }
+
+    /**
+     * Create opaque color from channel values.
+     *
+     * @param red
+     *            Red channel 0-255.
+     * @param green
+     *            Green channel 0-255.
+     * @param blue
+     *            Blue channel 0-255.
+     * @return Color
+     * @throws IllegalArgumentException
+     *             when a channel is out of range.
+     */
+    public static Color rgb(int red, int green, int blue) {
+        return rgba(red, green, blue, 255);
+    }
+
+    /**
+     * Create color from channel values.
+     *
+     * @param red
+     *            Red channel 0-255.
+     * @param green
+     *            Green channel 0-255.
+     * @param blue
+     *            Blue channel 0-255.
+     * @param alpha
+     *            Alpha channel 0-255, 255 being opaque.
+     * @return Color
+     * @throws IllegalArgumentException
+     *             when a channel is out of range.
+     */
+    public static Color rgba(int red, int green, int blue, int alpha) {
+        if (((red | green | blue | alpha) & ~0xff) != 0) {
+            throw new IllegalArgumentException(
+                    "Color channels must be in range 0-255");
+        }
+        return new Color(alpha << 24 | red << 16 | green << 8 | blue);
+    }
+
+    /**
+     * Create opaque color from six digits hex string.
+     *
+     * @see HexColor#parse(String)
+     *
+     * @param hex
+     *            Color in six digits hex string, e.g. #ffffff, not null.
+     * @return Color
+     * @throws IllegalArgumentException
+     *             when color string does not match pattern.
+     * @throws NullPointerException
+     *             when hex is null.
+     */
+    public static Color fromHex(String hex) {
+        return of(HexColor.parse(hex));
+    }
+
+    /**
+     * Create color from CSS color string, e.g. rgb(255 0 0 / 50%).
+     *
+     * @see CssColor#parse(String)
+     *
+     * @param css
+     *            Color in CSS syntax, not null.
+     * @return Color
+     * @throws IllegalArgumentException
+     *             when the color is not supported.
+     */
+    public static Color fromCss(String css) {
+        return ofArgb(CssColor.parse(css));
+    }
+
+    /**
+     * Get the red channel.
+     *
+     * @return int value 0-255.
+     */
+    public int getRed() {
+        return (argb >>> 16) & 0xff;
+    }
+
+    /**
+     * Get the green channel.
+     *
+     * @return int value 0-255.
+     */
+    public int getGreen() {
+        return (argb >>> 8) & 0xff;
+    }
+
+    /**
+     * Get the blue channel.
+     *
+     * @return int value 0-255.
+     */
+    public int getBlue() {
+        return argb & 0xff;
+    }
+
+    /**
+     * Get the alpha channel.
+     *
+     * @return int value 0-255, 255 being opaque.
+     */
+    public int getAlpha() {
+        return argb >>> 24;
+    }
+
+    /**
+     * Get the color without alpha as packed int.
+     *
+     * @return int in 0xRRGGBB format.
+     */
+    public int getRGB() {
+        return argb & 0xffffff;
+    }
+
+    /**
+     * Get the color as packed int.
+     *
+     * @return int in 0xAARRGGBB format.
+     */
+    public int getARGB() {
+        return argb;
+    }
+
+    /**
+     * Get the color in six digits hex format, alpha is not included. The
+     * string is computed once and then reused.
+     *
+     * @return String value, e.g. #ffffff.
+     */
+    public String toHex() {
+        String result = hex;
+        if (result == null) {
+            result = HexColor.format(argb);
+            hex = result;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Color && ((Color) obj).argb == argb;
+    }
+
+    @Override
+    public int hashCode() {
+        return argb;
+    }
+
+    @Override
+    public String toString() {
+        if (getAlpha() == 255) {
+            return toHex();
+        }
+        char[] alpha = new char[2];
+        HexColor.writePair(alpha, 0, getAlpha());
+        return toHex() + new String(alpha);
+    }
+}
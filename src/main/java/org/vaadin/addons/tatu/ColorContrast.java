@@ -0,0 +1,267 @@
+package org.vaadin.addons.tatu;
+
+import java.util.Objects;
+
+/**
+ * Contrast of colors by WCAG 2.x and APCA, and search of the closest color
+ * meeting a contrast requirement. Colors are passed as packed ints in
+ * 0xRRGGBB format. Luminance is computed with lookup tables, so a contrast
+ * check costs a few multiplications.
+ *
+ * @see ColorPicker#setContrastRequirement(Color, double)
+ */
+public final class ColorContrast {
+
+    /**
+     * Contrast algorithm.
+     */
+    public enum Algorithm {
+        /**
+         * WCAG 2.x contrast ratio from 1 to 21, e.g. 4.5 for normal text at
+         * level AA.
+         */
+        WCAG,
+        /**
+         * APCA lightness contrast Lc, used as absolute value from 0 to about
+         * 106, e.g. 60 for body text.
+         */
+        APCA;
+    }
+
+    // Linear values with the plain 2.4 exponent used by APCA
+    private static final float[] APCA_LINEAR = new float[256];
+
+    private static final int SEARCH_STEPS = 16;
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            APCA_LINEAR[i] = (float) Math.pow(i / 255.0, 2.4);
+        }
+    }
+
+    private ColorContrast() {
+    }
+
+    /**
+     * Get the WCAG relative luminance of a color.
+     *
+     * @param rgb
+     *            Color in 0xRRGGBB format.
+     * @return Luminance 0-1.
+     */
+    public static double relativeLuminance(int rgb) {
+        return 0.2126 * ColorConversions.toLinear((rgb >>> 16) & 0xff)
+                + 0.7152 * ColorConversions.toLinear((rgb >>> 8) & 0xff)
+                + 0.0722 * ColorConversions.toLinear(rgb & 0xff);
+    }
+
+    /**
+     * Get the WCAG 2.x contrast ratio of two colors. The order of the colors
+     * does not matter.
+     *
+     * @param rgb1
+     *            Color in 0xRRGGBB format.
+     * @param rgb2
+     *            Color in 0xRRGGBB format.
+     * @return Ratio from 1 to 21.
+     */
+    public static double contrastRatio(int rgb1, int rgb2) {
+        return contrastRatio(relativeLuminance(rgb1),
+                relativeLuminance(rgb2));
+    }
+
+    /**
+     * Get the WCAG 2.x contrast ratio of two relative luminances, use this
+     * when comparing many colors against the same background.
+     *
+     * @param luminance1
+     *            Relative luminance 0-1.
+     * @param luminance2
+     *            Relative luminance 0-1.
+     * @return Ratio from 1 to 21.
+     */
+    public static double contrastRatio(double luminance1, double luminance2) {
+        double lighter = Math.max(luminance1, luminance2);
+        double darker = Math.min(luminance1, luminance2);
+        return (lighter + 0.05) / (darker + 0.05);
+    }
+
+    /**
+     * Get the APCA lightness contrast of text on a background, using the
+     * constants of APCA version 0.0.98G.
+     *
+     * @param text
+     *            Text color in 0xRRGGBB format.
+     * @param background
+     *            Background color in 0xRRGGBB format.
+     * @return Lc value, positive for dark text on light background and
+     *         negative for light text on dark background.
+     */
+    public static double apcaContrast(int text, int background) {
+        return apcaContrast(apcaLuminance(text), apcaLuminance(background));
+    }
+
+    /**
+     * Get the APCA screen luminance of a color, before the soft clamp of
+     * near black colors.
+     *
+     * @param rgb
+     *            Color in 0xRRGGBB format.
+     * @return Luminance 0-1.
+     */
+    public static double apcaLuminance(int rgb) {
+        return 0.2126729 * APCA_LINEAR[(rgb >>> 16) & 0xff]
+                + 0.7151522 * APCA_LINEAR[(rgb >>> 8) & 0xff]
+                + 0.0721750 * APCA_LINEAR[rgb & 0xff];
+    }
+
+    /**
+     * Get the APCA lightness contrast of luminances computed with
+     * {@link #apcaLuminance(int)}.
+     *
+     * @param text
+     *            Luminance of text color.
+     * @param background
+     *            Luminance of background color.
+     * @return Lc value.
+     */
+    public static double apcaContrast(double text, double background) {
+        double txt = clampBlack(text);
+        double bg = clampBlack(background);
+        if (Math.abs(bg - txt) < 0.0005) {
+            return 0;
+        }
+        if (bg > txt) {
+            double sapc = (Math.pow(bg, 0.56) - Math.pow(txt, 0.57)) * 1.14;
+            return sapc < 0.1 ? 0 : (sapc - 0.027) * 100;
+        }
+        double sapc = (Math.pow(bg, 0.65) - Math.pow(txt, 0.62)) * 1.14;
+        return sapc > -0.1 ? 0 : (sapc + 0.027) * 100;
+    }
+
+    private static double clampBlack(double y) {
+        return y < 0.022 ? y + Math.pow(0.022 - y, 1.414) : y;
+    }
+
+    /**
+     * Check whether the color meets the contrast requirement.
+     *
+     * @param rgb
+     *            Color in 0xRRGGBB format.
+     * @param background
+     *            Background color in 0xRRGGBB format.
+     * @param minContrast
+     *            Minimum WCAG ratio or absolute APCA Lc.
+     * @param algorithm
+     *            Algorithm, not null.
+     * @return true if the contrast is at least minContrast.
+     */
+    public static boolean meets(int rgb, int background, double minContrast,
+            Algorithm algorithm) {
+        return contrast(rgb, background, algorithm) >= minContrast;
+    }
+
+    private static double contrast(int rgb, int background,
+            Algorithm algorithm) {
+        return algorithm == Algorithm.APCA
+                ? Math.abs(apcaContrast(rgb, background))
+                : contrastRatio(rgb, background);
+    }
+
+    /**
+     * Find the color closest to the given one which meets the contrast
+     * requirement. The hue and chroma of the color are kept in OKLCH and the
+     * lightness is searched with a binary search of fixed number of steps,
+     * in both directions, choosing the smaller change of lightness. The
+     * color is returned as is when it already meets the requirement.
+     *
+     * @param rgb
+     *            Color in 0xRRGGBB format.
+     * @param background
+     *            Background color in 0xRRGGBB format.
+     * @param minContrast
+     *            Minimum WCAG ratio or absolute APCA Lc.
+     * @param algorithm
+     *            Algorithm, not null.
+     * @return Color in 0xRRGGBB format, or black or white, whichever has
+     *         better contrast, when the requirement can't be met.
+     */
+    public static int nearestCompliant(int rgb, int background,
+            double minContrast, Algorithm algorithm) {
+        Objects.requireNonNull(algorithm, "algorithm can't be null");
+        if (meets(rgb, background, minContrast, algorithm)) {
+            return rgb;
+        }
+        float[] lch = new float[3];
+        ColorConversions.rgbToOklch(rgb & 0xffffff, lch, 0);
+        int darker = search(lch, 0, background, minContrast, algorithm);
+        int lighter = search(lch, 1, background, minContrast, algorithm);
+        if (darker >= 0 && lighter >= 0) {
+            float[] other = new float[3];
+            ColorConversions.rgbToOklch(darker, other, 0);
+            double darkerDelta = lch[0] - other[0];
+            ColorConversions.rgbToOklch(lighter, other, 0);
+            return other[0] - lch[0] < darkerDelta ? lighter : darker;
+        } else if (darker >= 0) {
+            return darker;
+        } else if (lighter >= 0) {
+            return lighter;
+        }
+        return contrast(0x000000, background, algorithm) >= contrast(
+                0xffffff, background, algorithm) ? 0x000000 : 0xffffff;
+    }
+
+    /**
+     * Find the color with the given lightness closest to the original which
+     * meets the requirement.
+     *
+     * @param limit
+     *            Lightness at the end of the search range, 0 or 1.
+     * @return The color or -1 if even the limit does not meet the
+     *         requirement.
+     */
+    private static int search(float[] lch, double limit, int background,
+            double minContrast, Algorithm algorithm) {
+        int best = ColorConversions.oklchToRgb(limit, lch[1], lch[2]);
+        if (!meets(best, background, minContrast, algorithm)) {
+            return -1;
+        }
+        // Invariant: near fails, far meets the requirement
+        double near = lch[0];
+        double far = limit;
+        for (int i = 0; i < SEARCH_STEPS; i++) {
+            double middle = (near + far) / 2;
+            int candidate = ColorConversions.oklchToRgb(middle, lch[1],
+                    lch[2]);
+            if (meets(candidate, background, minContrast, algorithm)) {
+                far = middle;
+                best = candidate;
+            } else {
+                near = middle;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Find the color closest to the given one which meets the WCAG contrast
+     * ratio against the background.
+     *
+     * @see #nearestCompliant(int, int, double, Algorithm)
+     *
+     * @param color
+     *            Color, not null.
+     * @param background
+     *            Background color, not null.
+     * @param minRatio
+     *            Minimum WCAG contrast ratio, e.g. 4.5.
+     * @return Opaque color.
+     */
+    public static Color nearestCompliant(Color color, Color background,
+            double minRatio) {
+        Objects.requireNonNull(color, "color can't be null");
+        Objects.requireNonNull(background, "background can't be null");
+        return Color.of(nearestCompliant(color.getRGB(), background.getRGB(),
+                minRatio, Algorithm.WCAG));
+    }
+}
@@ -0,0 +1,758 @@
+package org.vaadin.addons.tatu;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Conversions between sRGB colors and other color spaces. Colors are passed
+ * as packed ints in 0xRRGGBB format and results are written to caller owned
+ * arrays, so the conversions do not allocate. Conversions to sRGB clip out of
+ * gamut colors and ignore the alpha channel.
+ * <p>
+ * The bulk variants convert arrays of colors, where the components of the
+ * color at index i are at index i * 3 (or i * 4 for CMYK) of the component
+ * array. Arrays of at least {@link #PARALLEL_THRESHOLD} colors are converted
+ * in parallel in the common {@link ForkJoinPool}.
+ * <p>
+ * Value ranges of the components:
+ * <ul>
+ * <li>HSL and HSV: hue 0-360 degrees, saturation, lightness and value
+ * 0-1</li>
+ * <li>CIE Lab: L 0-100, a and b roughly -125-125, D50 white point as in
+ * CSS</li>
+ * <li>OKLab: L 0-1, a and b roughly -0.4-0.4</li>
+ * <li>OKLCH: L 0-1, chroma 0-0.4, hue 0-360 degrees</li>
+ * <li>CMYK: all 0-1, naive conversion without color profile</li>
+ * </ul>
+ */
+public final class ColorConversions {
+
+    /**
+     * Number of colors from which bulk conversions are run in parallel.
+     */
+    public static final int PARALLEL_THRESHOLD = 16384;
+
+    private static final float[] SRGB_TO_LINEAR = new float[256];
+
+    // CIE constants for Lab
+    private static final double KAPPA = 24389.0 / 27;
+    private static final double EPSILON = 216.0 / 24389;
+    private static final double D50_X = 0.3457 / 0.3585;
+    private static final double D50_Z = (1 - 0.3457 - 0.3585) / 0.3585;
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            double c = i / 255.0;
+            SRGB_TO_LINEAR[i] = (float) (c <= 0.04045 ? c / 12.92
+                    : Math.pow((c + 0.055) / 1.055, 2.4));
+        }
+    }
+
+    private ColorConversions() {
+    }
+
+    /**
+     * Get linear light value of an sRGB channel.
+     *
+     * @param channel
+     *            Channel value 0-255.
+     * @return Linear value 0-1.
+     */
+    public static float toLinear(int channel) {
+        return SRGB_TO_LINEAR[channel];
+    }
+
+    /**
+     * Convert linear light value to sRGB channel, clipped to range.
+     *
+     * @param linear
+     *            Linear value 0-1.
+     * @return Channel value 0-255.
+     */
+    public static int fromLinear(double linear) {
+        double value = linear <= 0.0031308 ? 12.92 * linear
+                : 1.055 * Math.pow(linear, 1 / 2.4) - 0.055;
+        return toChannel(value);
+    }
+
+    /**
+     * Pack channels in range 0-1 to a color, clipping them to range.
+     *
+     * @param red
+     *            Red 0-1.
+     * @param green
+     *            Green 0-1.
+     * @param blue
+     *            Blue 0-1.
+     * @return Color in 0xRRGGBB format.
+     */
+    public static int rgb(double red, double green, double blue) {
+        return (toChannel(red) << 16) | (toChannel(green) << 8)
+                | toChannel(blue);
+    }
+
+    private static int toChannel(double value) {
+        // NaN is mapped to 0 as well
+        if (!(value > 0)) {
+            return 0;
+        }
+        return value >= 1 ? 255 : (int) (value * 255 + 0.5);
+    }
+
+    private static int linearRgb(double r, double g, double b) {
+        return (fromLinear(r) << 16) | (fromLinear(g) << 8) | fromLinear(b);
+    }
+
+    /**
+     * Convert sRGB color to HSL.
+     *
+     * @param rgb
+     *            Color in 0xRRGGBB format.
+     * @param out
+     *            Array where hue, saturation and lightness are written.
+     * @param offset
+     *            Index of hue in the array.
+     */
+    public static void rgbToHsl(int rgb, float[] out, int offset) {
+        int r = (rgb >>> 16) & 0xff;
+        int g = (rgb >>> 8) & 0xff;
+        int b = rgb & 0xff;
+        int max = Math.max(r, Math.max(g, b));
+        int min = Math.min(r, Math.min(g, b));
+        double l = (max + min) / 510.0;
+        double d = (max - min) / 255.0;
+        out[offset] = hue(r, g, b, max, min);
+        out[offset + 1] = d == 0 ? 0
+                : (float) (d / (1 - Math.abs(2 * l - 1)));
+        out[offset + 2] = (float) l;
+    }
+
+    /**
+     * Convert HSL to sRGB color.
+     *
+     * @param hue
+     *            Hue in degrees, any value is wrapped to 0-360.
+     * @param saturation
+     *            Saturation 0-1.
+     * @param lightness
+     *            Lightness 0-1.
+     * @return Color in 0xRRGGBB format.
+     */
+    public static int hslToRgb(double hue, double saturation,
+            double lightness) {
+        double h = wrapHue(hue);
+        double a = saturation * Math.min(lightness, 1 - lightness);
+        return rgb(hslChannel(0, h, a, lightness),
+                hslChannel(8, h, a, lightness),
+                hslChannel(4, h, a, lightness));
+    }
+
+    private static double hslChannel(int n, double h, double a, double l) {
+        double k = (n + h / 30) % 12;
+        return l - a * Math.max(-1, Math.min(Math.min(k - 3, 9 - k), 1));
+    }
+
+    /**
+     * Convert sRGB color to HSV.
+     *
+     * @param rgb
+     *            Color in 0xRRGGBB format.
+     * @param out
+     *            Array where hue, saturation and value are written.
+     * @param offset
+     *            Index of hue in the array.
+     */
+    public static void rgbToHsv(int rgb, float[] out, int offset) {
+        int r = (rgb >>> 16) & 0xff;
+        int g = (rgb >>> 8) & 0xff;
+        int b = rgb & 0xff;
+        int max = Math.max(r, Math.max(g, b));
+        int min = Math.min(r, Math.min(g, b));
+        out[offset] = hue(r, g, b, max, min);
+        out[offset + 1] = max == 0 ? 0 : (float) (max - min) / max;
+        out[offset + 2] = max / 255f;
+    }
+
+    /**
+     * Convert HSV to sRGB color.
+     *
+     * @param hue
+     *            Hue in degrees, any value is wrapped to 0-360.
+     * @param saturation
+     *            Saturation 0-1.
+     * @param value
+     *            Value 0-1.
+     * @return Color in 0xRRGGBB format.
+     */
+    public static int hsvToRgb(double hue, double saturation, double value) {
+        double h = wrapHue(hue);
+        return rgb(hsvChannel(5, h, saturation, value),
+                hsvChannel(3, h, saturation, value),
+                hsvChannel(1, h, saturation, value));
+    }
+
+    private static double hsvChannel(int n, double h, double s, double v) {
+        double k = (n + h / 60) % 6;
+        return v - v * s * Math.max(0, Math.min(Math.min(k, 4 - k), 1));
+    }
+
+    /**
+     * Convert HWB to sRGB color as defined in CSS Color 4. Channels are
+     * rounded half to even like in browsers, e.g. hwb(0 20% 30%) is #b23333.
+     *
+     * @param hue
+     *            Hue in degrees, any value is wrapped to 0-360.
+     * @param whiteness
+     *            Whiteness 0-1.
+     * @param blackness
+     *            Blackness 0-1.
+     * @return Color in 0xRRGGBB format.
+     */
+    public static int hwbToRgb(double hue, double whiteness,
+            double blackness) {
+        if (whiteness + blackness >= 1) {
+            int gray = toEvenChannel(whiteness / (whiteness + blackness));
+            return (gray << 16) | (gray << 8) | gray;
+        }
+        double h = wrapHue(hue);
+        double scale = 1 - whiteness - blackness;
+        return (toEvenChannel(hslChannel(0, h, 0.5, 0.5) * scale
+                + whiteness) << 16)
+                | (toEvenChannel(hslChannel(8, h, 0.5, 0.5) * scale
+                        + whiteness) << 8)
+                | toEvenChannel(hslChannel(4, h, 0.5, 0.5) * scale
+                        + whiteness);
+    }
+
+    private static int toEvenChannel(double value) {
+        // NaN is mapped to 0 as well
+        if (!(value > 0)) {
+            return 0;
+        }
+        return value >= 1 ? 255 : (int) Math.rint(value * 255);
+    }
+
+    private static float hue(int r, int g, int b, int max, int min) {
+        // Hue is 0 for achromatic colors
+        int d = max - min;
+        if (d == 0) {
+            return 0;
+        }
+        double h;
+        if (max == r) {
+            h = (double) (g - b) / d + (g < b ? 6 : 0);
+        } else if (max == g) {
+            h = (double) (b - r) / d + 2;
+        } else {
+            h = (double) (r - g) / d + 4;
+        }
+        return (float) (h * 60);
+    }
+
+    private static double wrapHue(double hue) {
+        double h = hue % 360;
+        return h < 0 ? h + 360 : h;
+    }
+
+    /**
+     * Convert sRGB color to CIE Lab.
+     *
+     * @param rgb
+     *            Color in 0xRRGGBB format.
+     * @param out
+     *            Array where L, a and b are written.
+     * @param offset
+     *            Index of L in the array.
+     */
+    public static void rgbToLab(int rgb, float[] out, int offset) {
+        double r = SRGB_TO_LINEAR[(rgb >>> 16) & 0xff];
+        double g = SRGB_TO_LINEAR[(rgb >>> 8) & 0xff];
+        double b = SRGB_TO_LINEAR[rgb & 0xff];
+
+        // Linear sRGB to XYZ, adapted from D65 to D50 with Bradford
+        double x = 0.4360657496321942 * r + 0.3851515490647211 * g
+                + 0.14307837223756717 * b;
+        double y = 0.22249316329773264 * r + 0.7168869742477771 * g
+                + 0.06061983440051401 * b;
+        double z = 0.01392393331797532 * r + 0.09708135172452213 * g
+                + 0.7140993556376449 * b;
+
+        double fx = labF(x / D50_X);
+        double fy = labF(y);
+        double fz = labF(z / D50_Z);
+        out[offset] = (float) (116 * fy - 16);
+        out[offset + 1] = (float) (500 * (fx - fy));
+        out[offset + 2] = (float) (200 * (fy - fz));
+    }
+
+    private static double labF(double t) {
+        return t > EPSILON ? Math.cbrt(t) : (KAPPA * t + 16) / 116;
+    }
+
+    /**
+     * Convert CIE Lab to sRGB color.
+     *
+     * @param l
+     *            Lightness 0-100.
+     * @param a
+     *            a axis.
+     * @param b
+     *            b axis.
+     * @return Color in 0xRRGGBB format.
+     */
+    public static int labToRgb(double l, double a, double b) {
+        double fy = (l + 16) / 116;
+        double fx = fy + a / 500;
+        double fz = fy - b / 200;
+        double fx3 = fx * fx * fx;
+        double fz3 = fz * fz * fz;
+        double x = (fx3 > EPSILON ? fx3 : (116 * fx - 16) / KAPPA) * D50_X;
+        double y = l > KAPPA * EPSILON ? fy * fy * fy : l / KAPPA;
+        double z = (fz3 > EPSILON ? fz3 : (116 * fz - 16) / KAPPA) * D50_Z;
+
+        // XYZ adapted from D50 to D65 with Bradford, to linear sRGB
+        return linearRgb(
+                3.1341359569958707 * x - 1.6173863321686954 * y
+                        - 0.4906619460083532 * z,
+                -0.978795502912089 * x + 1.916254567268604 * y
+                        + 0.03344273116131948 * z,
+                0.07195537988411684 * x - 0.22897682641681955 * y
+                        + 1.4053860583241256 * z);
+    }
+
+    /**
+     * Convert sRGB color to OKLab.
+     *
+     * @param rgb
+     *            Color in 0xRRGGBB format.
+     * @param out
+     *            Array where L, a and b are written.
+     * @param offset
+     *            Index of L in the array.
+     */
+    public static void rgbToOklab(int rgb, float[] out, int offset) {
+        double r = SRGB_TO_LINEAR[(rgb >>> 16) & 0xff];
+        double g = SRGB_TO_LINEAR[(rgb >>> 8) & 0xff];
+        double b = SRGB_TO_LINEAR[rgb & 0xff];
+
+        double l = Math.cbrt(
+                0.4122214708 * r + 0.5363325363 * g + 0.0514459929 * b);
+        double m = Math.cbrt(
+                0.2119034982 * r + 0.6806995451 * g + 0.1073969566 * b);
+        double s = Math.cbrt(
+                0.0883024619 * r + 0.2817188376 * g + 0.6299787005 * b);
+
+        out[offset] = (float) (0.2104542553 * l + 0.7936177850 * m
+                - 0.0040720468 * s);
+        out[offset + 1] = (float) (1.9779984951 * l - 2.4285922050 * m
+                + 0.4505937099 * s);
+        out[offset + 2] = (float) (0.0259040371 * l + 0.7827717662 * m
+                - 0.8086757660 * s);
+    }
+
+    /**
+     * Convert OKLab to sRGB color.
+     *
+     * @param l
+     *            Lightness 0-1.
+     * @param a
+     *            a axis.
+     * @param b
+     *            b axis.
+     * @return Color in 0xRRGGBB format.
+     */
+    public static int oklabToRgb(double l, double a, double b) {
+        double l_ = l + 0.3963377774 * a + 0.2158037573 * b;
+        double m_ = l - 0.1055613458 * a - 0.0638541728 * b;
+        double s_ = l - 0.0894841775 * a - 1.2914855480 * b;
+        double lc = l_ * l_ * l_;
+        double mc = m_ * m_ * m_;
+        double sc = s_ * s_ * s_;
+        return linearRgb(
+                4.0767416621 * lc - 3.3077115913 * mc + 0.2309699292 * sc,
+                -1.2684380046 * lc + 2.6097574011 * mc - 0.3413193965 * sc,
+                -0.0041960863 * lc - 0.7034186147 * mc + 1.7076147010 * sc);
+    }
+
+    /**
+     * Convert sRGB color to OKLCH.
+     *
+     * @param rgb
+     *            Color in 0xRRGGBB format.
+     * @param out
+     *            Array where L, chroma and hue are written.
+     * @param offset
+     *            Index of L in the array.
+     */
+    public static void rgbToOklch(int rgb, float[] out, int offset) {
+        rgbToOklab(rgb, out, offset);
+        float a = out[offset + 1];
+        float b = out[offset + 2];
+        double c = Math.sqrt(a * a + b * b);
+        out[offset + 1] = (float) c;
+        // Hue of grays is noise from rounding, use 0 as CSS does
+        out[offset + 2] = c < 1e-4 ? 0
+                : (float) wrapHue(Math.toDegrees(Math.atan2(b, a)));
+    }
+
+    /**
+     * Convert OKLCH to sRGB color.
+     *
+     * @param l
+     *            Lightness 0-1.
+     * @param chroma
+     *            Chroma.
+     * @param hue
+     *            Hue in degrees.
+     * @return Color in 0xRRGGBB format.
+     */
+    public static int oklchToRgb(double l, double chroma, double hue) {
+        double h = Math.toRadians(hue);
+        return oklabToRgb(l, chroma * Math.cos(h), chroma * Math.sin(h));
+    }
+
+    /**
+     * Check whether the OKLCH color is inside the sRGB gamut, i.e. can be
+     * converted without clipping.
+     *
+     * @param l
+     *            Lightness 0-1.
+     * @param chroma
+     *            Chroma.
+     * @param hue
+     *            Hue in degrees.
+     * @return true if the color is in gamut.
+     */
+    public static boolean isOklchInGamut(double l, double chroma,
+            double hue) {
+        double h = Math.toRadians(hue);
+        double a = chroma * Math.cos(h);
+        double b = chroma * Math.sin(h);
+        double l_ = l + 0.3963377774 * a + 0.2158037573 * b;
+        double m_ = l - 0.1055613458 * a - 0.0638541728 * b;
+        double s_ = l - 0.0894841775 * a - 1.2914855480 * b;
+        double lc = l_ * l_ * l_;
+        double mc = m_ * m_ * m_;
+        double sc = s_ * s_ * s_;
+        return inUnitRange(
+                4.0767416621 * lc - 3.3077115913 * mc + 0.2309699292 * sc)
+                && inUnitRange(-1.2684380046 * lc + 2.6097574011 * mc
+                        - 0.3413193965 * sc)
+                && inUnitRange(-0.0041960863 * lc - 0.7034186147 * mc
+                        + 1.7076147010 * sc);
+    }
+
+    private static boolean inUnitRange(double linear) {
+        // Tolerance for the rounding of the matrices
+        return linear >= -1e-4 && linear <= 1 + 1e-4;
+    }
+
+    /**
+     * Convert sRGB color to CMYK.
+     *
+     * @param rgb
+     *            Color in 0xRRGGBB format.
+     * @param out
+     *            Array where cyan, magenta, yellow and black are written.
+     * @param offset
+     *            Index of cyan in the array.
+     */
+    public static void rgbToCmyk(int rgb, float[] out, int offset) {
+        int r = (rgb >>> 16) & 0xff;
+        int g = (rgb >>> 8) & 0xff;
+        int b = rgb & 0xff;
+        int max = Math.max(r, Math.max(g, b));
+        if (max == 0) {
+            out[offset] = 0;
+            out[offset + 1] = 0;
+            out[offset + 2] = 0;
+            out[offset + 3] = 1;
+            return;
+        }
+        float scale = 1f / max;
+        out[offset] = (max - r) * scale;
+        out[offset + 1] = (max - g) * scale;
+        out[offset + 2] = (max - b) * scale;
+        out[offset + 3] = 1 - max / 255f;
+    }
+
+    /**
+     * Convert CMYK to sRGB color.
+     *
+     * @param cyan
+     *            Cyan 0-1.
+     * @param magenta
+     *            Magenta 0-1.
+     * @param yellow
+     *            Yellow 0-1.
+     * @param black
+     *            Black 0-1.
+     * @return Color in 0xRRGGBB format.
+     */
+    public static int cmykToRgb(double cyan, double magenta, double yellow,
+            double black) {
+        double k = 1 - black;
+        return rgb((1 - cyan) * k, (1 - magenta) * k, (1 - yellow) * k);
+    }
+
+    /**
+     * Convert sRGB colors to HSL.
+     *
+     * @param colors
+     *            Colors in 0xRRGGBB format.
+     * @param out
+     *            Array of at least 3 * colors.length components.
+     */
+    public static void rgbToHsl(int[] colors, float[] out) {
+        checkLength(colors.length, out.length, 3);
+        forEach(colors.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                rgbToHsl(colors[i], out, i * 3);
+            }
+        });
+    }
+
+    /**
+     * Convert HSL colors to sRGB.
+     *
+     * @param hsl
+     *            Array of 3 * out.length components.
+     * @param out
+     *            Array where colors in 0xRRGGBB format are written.
+     */
+    public static void hslToRgb(float[] hsl, int[] out) {
+        checkLength(out.length, hsl.length, 3);
+        forEach(out.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int j = i * 3;
+                out[i] = hslToRgb(hsl[j], hsl[j + 1], hsl[j + 2]);
+            }
+        });
+    }
+
+    /**
+     * Convert sRGB colors to HSV.
+     *
+     * @param colors
+     *            Colors in 0xRRGGBB format.
+     * @param out
+     *            Array of at least 3 * colors.length components.
+     */
+    public static void rgbToHsv(int[] colors, float[] out) {
+        checkLength(colors.length, out.length, 3);
+        forEach(colors.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                rgbToHsv(colors[i], out, i * 3);
+            }
+        });
+    }
+
+    /**
+     * Convert HSV colors to sRGB.
+     *
+     * @param hsv
+     *            Array of 3 * out.length components.
+     * @param out
+     *            Array where colors in 0xRRGGBB format are written.
+     */
+    public static void hsvToRgb(float[] hsv, int[] out) {
+        checkLength(out.length, hsv.length, 3);
+        forEach(out.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int j = i * 3;
+                out[i] = hsvToRgb(hsv[j], hsv[j + 1], hsv[j + 2]);
+            }
+        });
+    }
+
+    /**
+     * Convert sRGB colors to OKLab.
+     *
+     * @param colors
+     *            Colors in 0xRRGGBB format.
+     * @param out
+     *            Array of at least 3 * colors.length components.
+     */
+    public static void rgbToOklab(int[] colors, float[] out) {
+        checkLength(colors.length, out.length, 3);
+        forEach(colors.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                rgbToOklab(colors[i], out, i * 3);
+            }
+        });
+    }
+
+    /**
+     * Convert OKLab colors to sRGB.
+     *
+     * @param oklab
+     *            Array of 3 * out.length components.
+     * @param out
+     *            Array where colors in 0xRRGGBB format are written.
+     */
+    public static void oklabToRgb(float[] oklab, int[] out) {
+        checkLength(out.length, oklab.length, 3);
+        forEach(out.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int j = i * 3;
+                out[i] = oklabToRgb(oklab[j], oklab[j + 1], oklab[j + 2]);
+            }
+        });
+    }
+
+    /**
+     * Convert sRGB colors to OKLCH.
+     *
+     * @param colors
+     *            Colors in 0xRRGGBB format.
+     * @param out
+     *            Array of at least 3 * colors.length components.
+     */
+    public static void rgbToOklch(int[] colors, float[] out) {
+        checkLength(colors.length, out.length, 3);
+        forEach(colors.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                rgbToOklch(colors[i], out, i * 3);
+            }
+        });
+    }
+
+    /**
+     * Convert OKLCH colors to sRGB.
+     *
+     * @param oklch
+     *            Array of 3 * out.length components.
+     * @param out
+     *            Array where colors in 0xRRGGBB format are written.
+     */
+    public static void oklchToRgb(float[] oklch, int[] out) {
+        checkLength(out.length, oklch.length, 3);
+        forEach(out.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int j = i * 3;
+                out[i] = oklchToRgb(oklch[j], oklch[j + 1], oklch[j + 2]);
+            }
+        });
+    }
+
+    /**
+     * Convert sRGB colors to CIE Lab.
+     *
+     * @param colors
+     *            Colors in 0xRRGGBB format.
+     * @param out
+     *            Array of at least 3 * colors.length components.
+     */
+    public static void rgbToLab(int[] colors, float[] out) {
+        checkLength(colors.length, out.length, 3);
+        forEach(colors.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                rgbToLab(colors[i], out, i * 3);
+            }
+        });
+    }
+
+    /**
+     * Convert CIE Lab colors to sRGB.
+     *
+     * @param lab
+     *            Array of 3 * out.length components.
+     * @param out
+     *            Array where colors in 0xRRGGBB format are written.
+     */
+    public static void labToRgb(float[] lab, int[] out) {
+        checkLength(out.length, lab.length, 3);
+        forEach(out.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int j = i * 3;
+                out[i] = labToRgb(lab[j], lab[j + 1], lab[j + 2]);
+            }
+        });
+    }
+
+    /**
+     * Convert sRGB colors to CMYK.
+     *
+     * @param colors
+     *            Colors in 0xRRGGBB format.
+     * @param out
+     *            Array of at least 4 * colors.length components.
+     */
+    public static void rgbToCmyk(int[] colors, float[] out) {
+        checkLength(colors.length, out.length, 4);
+        forEach(colors.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                rgbToCmyk(colors[i], out, i * 4);
+            }
+        });
+    }
+
+    /**
+     * Convert CMYK colors to sRGB.
+     *
+     * @param cmyk
+     *            Array of 4 * out.length components.
+     * @param out
+     *            Array where colors in 0xRRGGBB format are written.
+     */
+    public static void cmykToRgb(float[] cmyk, int[] out) {
+        checkLength(out.length, cmyk.length, 4);
+        forEach(out.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int j = i * 4;
+                out[i] = cmykToRgb(cmyk[j], cmyk[j + 1], cmyk[j + 2],
+                        cmyk[j + 3]);
+            }
+        });
+    }
+
+    private static void checkLength(int colors, int components,
+            int stride) {
+        if ((long) colors * stride > components) {
+            throw new IllegalArgumentException(
+                    "Component array is too short for " + colors
+                            + " colors");
+        }
+    }
+
+    private static void forEach(int size, RangeConversion conversion) {
+        if (size < PARALLEL_THRESHOLD
+                || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            conversion.convert(0, size);
+        } else {
+            ForkJoinPool.commonPool()
+                    .invoke(new ConvertAction(conversion, 0, size));
+        }
+    }
+
+    @FunctionalInterface
+    private interface RangeConversion {
+        void convert(int from, int to);
+    }
+
+    /**
+     * Splits the range in halves until it is below the threshold.
+     */
+    private static class ConvertAction extends RecursiveAction {
+        private final transient RangeConversion conversion;
+        private final int from;
+        private final int to;
+
+        private ConvertAction(RangeConversion conversion, int from, int to) {
+            this.conversion = conversion;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD / 2) {
+                conversion.convert(from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ConvertAction(conversion, from, middle),
+                        new ConvertAction(conversion, middle, to));
+            }
+        }
+    }
+}
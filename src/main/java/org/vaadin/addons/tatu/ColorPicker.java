@@ -1,14 +1,33 @@
 package org.vaadin.addons.tatu;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
-
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.safety.Safelist;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 import com.vaadin.flow.component.AbstractSinglePropertyField;
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.ClientCallable;
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.ComponentEvent;
+import com.vaadin.flow.component.ComponentEventListener;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.DomEvent;
+import com.vaadin.flow.component.EventData;
 import com.vaadin.flow.component.Focusable;
 import com.vaadin.flow.component.HasHelper;
 import com.vaadin.flow.component.HasLabel;
@@ -17,6 +36,7 @@ import com.vaadin.flow.component.HasStyle;
 import com.vaadin.flow.component.HasTheme;
 import com.vaadin.flow.component.HasValidation;
 import com.vaadin.flow.component.Tag;
+import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.combobox.ComboBox;
 import com.vaadin.flow.component.customfield.CustomField;
 import com.vaadin.flow.component.dependency.JsModule;
@@ -26,6 +46,17 @@ import com.vaadin.flow.component.shared.HasTooltip;
 import com.vaadin.flow.data.binder.HasValidator;
 import com.vaadin.flow.data.binder.ValidationResult;
 import com.vaadin.flow.data.binder.Validator;
+import com.vaadin.flow.data.provider.DataProvider;
+import com.vaadin.flow.data.provider.Query;
+import com.vaadin.flow.data.value.HasValueChangeMode;
+import com.vaadin.flow.data.value.ValueChangeMode;
+import com.vaadin.flow.internal.JsonSerializer;
+import com.vaadin.flow.shared.Registration;
+
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
+import elemental.json.JsonValue;
 
 /**
  * A ColorPicker component.
@@ -38,7 +69,7 @@ public class ColorPicker
         extends AbstractSinglePropertyField<ColorPicker, String>
         implements HasSize, HasValidation, Focusable<ColorPicker>, HasHelper,
         HasLabel, HasTheme, HasStyle, HasThemeVariant<ColorPickerVariant>,
-        HasValidator<String>, HasTooltip {
+        HasValidator<String>, HasTooltip, HasValueChangeMode {
 
     /**
      * Caption mode.
@@ -56,11 +87,30 @@ public class ColorPicker
 
     /**
      * A preset color.
+     * <p>
+     * Presets are serialized in a compact form, the color as an int and the
+     * caption mode as a byte, as there can be many of them in a session.
+     * <p>
+     * Presets that are the same in many sessions, e.g. a corporate palette,
+     * can be shared with {@link #of(String, String, CaptionMode)}, which
+     * returns immutable instances.
      */
     public static class ColorPreset implements Serializable {
-        private String color;
-        private String caption;
-        private CaptionMode captionMode = CaptionMode.TEXT;
+        // Flags of the serialized form, COLOR_AS_STRING is set when the color
+        // is not in lower case and thus written as a string to keep it as is
+        private static final int COLOR_AS_STRING = 0x80;
+        private static final int INTERNED = 0x40;
+        private static final int MODE_MASK = 0x3f;
+
+        // Presets returned by of(), removed when no longer referenced
+        private static final Map<PresetKey, InternedPreset> INTERNED_PRESETS = new ConcurrentHashMap<>();
+        private static final ReferenceQueue<ColorPreset> RELEASED = new ReferenceQueue<>();
+
+        private transient String color;
+        private transient String caption;
+        private transient CaptionMode captionMode = CaptionMode.TEXT;
+        private transient String textCaption;
+        private transient boolean interned;
 
         /**
          * Constructor.
@@ -85,7 +135,7 @@ public class ColorPicker
          * @param caption
          *            Displayed name of the color, not null.
          * @param captionMode
-         *            The CaptionMode, @see CaptionMode
+         *            The CaptionMode, @see CaptionMode, not null.
          */
         public ColorPreset(String color, String caption,
                 CaptionMode captionMode) {
@@ -94,6 +144,75 @@ public class ColorPicker
             setCaptionMode(captionMode);
         }
 
+        /**
+         * Get a shared preset. Returns the same instance for the same color,
+         * caption and caption mode as long as it is referenced, so that the
+         * presets and their strings exist only once however many sessions
+         * use them. The returned preset is immutable, and its setters throw
+         * UnsupportedOperationException.
+         *
+         * @param color
+         *            Color value in six digits hex string, e.g. #ffffff, not
+         *            null.
+         * @param caption
+         *            Displayed name of the color, not null.
+         * @param captionMode
+         *            The CaptionMode, not null.
+         * @return Immutable ColorPreset.
+         * @throws IllegalArgumentException
+         *             when color string does not match pattern.
+         * @throws NullPointerException
+         *             when an argument is null.
+         */
+        public static ColorPreset of(String color, String caption,
+                CaptionMode captionMode) {
+            Objects.requireNonNull(captionMode, "captionMode can't be null");
+            return intern(new ColorPreset(color, caption, captionMode));
+        }
+
+        private static ColorPreset intern(ColorPreset preset) {
+            Reference<? extends ColorPreset> released;
+            while ((released = RELEASED.poll()) != null) {
+                InternedPreset reference = (InternedPreset) released;
+                INTERNED_PRESETS.remove(reference.key, reference);
+            }
+            PresetKey key = new PresetKey(preset);
+            while (true) {
+                InternedPreset reference = INTERNED_PRESETS.get(key);
+                ColorPreset existing = reference == null ? null
+                        : reference.get();
+                if (existing != null) {
+                    return existing;
+                }
+                preset.interned = true;
+                InternedPreset value = new InternedPreset(preset, key);
+                if (reference == null
+                        ? INTERNED_PRESETS.putIfAbsent(key, value) == null
+                        : INTERNED_PRESETS.replace(key, reference, value)) {
+                    return preset;
+                }
+            }
+        }
+
+        /**
+         * Get whether this preset is shared and immutable. Package private,
+         * so that it is not serialized to the client as a bean property.
+         *
+         * @see #of(String, String, CaptionMode)
+         *
+         * @return boolean value.
+         */
+        boolean isInterned() {
+            return interned;
+        }
+
+        private void checkMutable() {
+            if (interned) {
+                throw new UnsupportedOperationException(
+                        "Interned ColorPreset can't be modified");
+            }
+        }
+
         /**
          * Get color value in six digit hex format.
          * 
@@ -114,8 +233,9 @@ public class ColorPicker
          *             when color is null.
          */
         public void setColor(String color) {
+            checkMutable();
             Objects.requireNonNull(color, "color can't be null");
-            if (color.matches("#......")) {
+            if (HexColor.isValid(color)) {
                 this.color = color;
             } else {
                 throw new IllegalArgumentException(
@@ -141,24 +261,40 @@ public class ColorPicker
          *             when caption is null
          */
         public void setCaption(String caption) {
+            checkMutable();
             Objects.requireNonNull(caption, "caption can't be null");
             if (getCaptionMode() == CaptionMode.HTML) {
-                caption = sanitize(caption);
+                HtmlSanitizer sanitizer = HtmlSanitizer.getDefault();
+                String html = sanitizer.sanitize(caption);
+                textCaption = sanitizer.toText(caption);
+                caption = html;
+            } else {
+                textCaption = caption;
             }
             this.caption = caption;
         }
 
+        /**
+         * Get the caption as plain text. For HTML captions this is the text
+         * content of the sanitized caption, otherwise the caption itself.
+         * 
+         * @return String value.
+         */
+        public String getTextCaption() {
+            return textCaption;
+        }
+
         /**
          * Set the @see CaptionMode
          * 
          * @param captionMode
-         *            CaptionMode.
+         *            CaptionMode, not null.
          */
         public void setCaptionMode(CaptionMode captionMode) {
+            checkMutable();
+            Objects.requireNonNull(captionMode, "captionMode can't be null");
             this.captionMode = captionMode;
-            if (captionMode == CaptionMode.HTML) {
-                setCaption(getCaption());
-            }
+            setCaption(getCaption());
         }
 
         /**
@@ -169,15 +305,261 @@ public class ColorPicker
         public CaptionMode getCaptionMode() {
             return captionMode;
         }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            int rgb = HexColor.parse(color);
+            boolean colorAsString = !color.equals(HexColor.format(rgb));
+            out.writeByte(captionMode.ordinal()
+                    | (colorAsString ? COLOR_AS_STRING : 0)
+                    | (interned ? INTERNED : 0));
+            if (colorAsString) {
+                out.writeUTF(color);
+            } else {
+                out.writeInt(rgb);
+            }
+            out.writeObject(caption);
+            // Plain text of HTML caption is written to avoid sanitizing again
+            if (captionMode == CaptionMode.HTML) {
+                out.writeObject(textCaption);
+            }
+        }
+
+        private void readObject(ObjectInputStream in)
+                throws IOException, ClassNotFoundException {
+            int flags = in.readUnsignedByte();
+            CaptionMode[] modes = CaptionMode.values();
+            int mode = flags & MODE_MASK;
+            if (mode >= modes.length) {
+                throw new InvalidObjectException("Unknown caption mode");
+            }
+            captionMode = modes[mode];
+            color = (flags & COLOR_AS_STRING) != 0 ? in.readUTF()
+                    : HexColor.format(in.readInt());
+            if (!HexColor.isValid(color)) {
+                throw new InvalidObjectException(
+                        "Color must be in format #......");
+            }
+            caption = (String) in.readObject();
+            textCaption = captionMode == CaptionMode.HTML
+                    ? (String) in.readObject()
+                    : caption;
+            if (caption == null || textCaption == null) {
+                throw new InvalidObjectException("caption can't be null");
+            }
+            interned = (flags & INTERNED) != 0;
+        }
+
+        private Object readResolve() {
+            return interned ? intern(this) : this;
+        }
+
+        private static final class PresetKey {
+            private final String color;
+            private final String caption;
+            private final CaptionMode captionMode;
+
+            private PresetKey(ColorPreset preset) {
+                color = preset.color;
+                caption = preset.caption;
+                captionMode = preset.captionMode;
+            }
+
+            @Override
+            public boolean equals(Object obj) {
+                if (!(obj instanceof PresetKey)) {
+                    return false;
+                }
+                PresetKey other = (PresetKey) obj;
+                return color.equals(other.color)
+                        && caption.equals(other.caption)
+                        && captionMode == other.captionMode;
+            }
+
+            @Override
+            public int hashCode() {
+                return (color.hashCode() * 31 + caption.hashCode()) * 31
+                        + captionMode.hashCode();
+            }
+        }
+
+        private static final class InternedPreset
+                extends WeakReference<ColorPreset> {
+            private final PresetKey key;
+
+            private InternedPreset(ColorPreset preset, PresetKey key) {
+                super(preset, RELEASED);
+                this.key = key;
+            }
+        }
     }
 
     /**
      * Possible input modes for the field.
      */
     public enum InputMode {
-        NOCSSINPUT, PRESETANDCSS;
+        NOCSSINPUT, PRESETANDCSS,
+        /**
+         * Like PRESETANDCSS, and in addition
+         * {@link ColorPicker#setValue(String)} accepts any CSS color
+         * supported by {@link CssColor}, which is normalized to hex format on
+         * the server.
+         */
+        CSSVALUE;
     }
 
+    /**
+     * Timings measured in the browser by the pickers of the page, sent once
+     * per page load when a listener is added with
+     * {@link ColorPicker#addClientTimingListener(ComponentEventListener)}.
+     */
+    @DomEvent("client-timing")
+    public static class ClientTimingEvent extends ComponentEvent<ColorPicker> {
+        private final Map<String, Timing> timings = new LinkedHashMap<>();
+        private final int hardwareConcurrency;
+        private final double deviceMemory;
+
+        /**
+         * Creates a new event.
+         *
+         * @param source
+         *            The ColorPicker.
+         * @param fromClient
+         *            true if the event originated from the client.
+         * @param detail
+         *            The timings as JSON.
+         */
+        public ClientTimingEvent(ColorPicker source, boolean fromClient,
+                @EventData("event.detail") JsonObject detail) {
+            super(source, fromClient);
+            JsonObject json = detail.getObject("timings");
+            for (String name : json.keys()) {
+                JsonObject timing = json.getObject(name);
+                timings.put(name,
+                        new Timing((int) timing.getNumber("count"),
+                                timing.getNumber("total"),
+                                timing.getNumber("max")));
+            }
+            hardwareConcurrency = (int) detail
+                    .getNumber("hardwareConcurrency");
+            deviceMemory = detail.getNumber("deviceMemory");
+        }
+
+        /**
+         * Get the timings by name: render, strip-html, decode-presets,
+         * css-color-input and first-open. Only the measured operations are
+         * included.
+         *
+         * @return Unmodifiable map of Timing.
+         */
+        public Map<String, Timing> getTimings() {
+            return Collections.unmodifiableMap(timings);
+        }
+
+        /**
+         * Get the number of logical processors of the device.
+         *
+         * @return int value, 0 if not known.
+         */
+        public int getHardwareConcurrency() {
+            return hardwareConcurrency;
+        }
+
+        /**
+         * Get the approximate memory of the device in gigabytes.
+         *
+         * @return double value, 0 if not known.
+         */
+        public double getDeviceMemory() {
+            return deviceMemory;
+        }
+
+        /**
+         * Aggregated timing of an operation in the browser.
+         */
+        public static class Timing implements Serializable {
+            private final int count;
+            private final double totalMillis;
+            private final double maxMillis;
+
+            /**
+             * Constructor.
+             *
+             * @param count
+             *            Number of measurements.
+             * @param totalMillis
+             *            Total time in milliseconds.
+             * @param maxMillis
+             *            Longest time in milliseconds.
+             */
+            public Timing(int count, double totalMillis, double maxMillis) {
+                this.count = count;
+                this.totalMillis = totalMillis;
+                this.maxMillis = maxMillis;
+            }
+
+            /**
+             * Get the number of measurements.
+             *
+             * @return int value.
+             */
+            public int getCount() {
+                return count;
+            }
+
+            /**
+             * Get the total time in milliseconds.
+             *
+             * @return double value.
+             */
+            public double getTotalMillis() {
+                return totalMillis;
+            }
+
+            /**
+             * Get the longest time in milliseconds.
+             *
+             * @return double value.
+             */
+            public double getMaxMillis() {
+                return maxMillis;
+            }
+
+            /**
+             * Get the average time in milliseconds.
+             *
+             * @return double value.
+             */
+            public double getAverageMillis() {
+                return count == 0 ? 0 : totalMillis / count;
+            }
+        }
+    }
+
+    // Largest page of lazy presets the browser may request
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private static volatile ColorPickerMetrics metrics = ColorPickerMetrics.NOOP;
+
+    private InputMode inputMode = InputMode.PRESETANDCSS;
+    private List<ColorPreset> presets;
+    private PresetIndex presetIndex;
+    private PresetCatalog catalog;
+    private DataProvider<ColorPreset, String> presetsDataProvider;
+    private Registration dataProviderRegistration;
+    private boolean snapToPresets;
+    private boolean compactPresets;
+    private ValueChangeMode valueChangeMode = ValueChangeMode.ON_CHANGE;
+    private int valueChangeTimeout = DEFAULT_CHANGE_TIMEOUT;
+    private List<PreviewBinding> previewBindings;
+    private Color contrastBackground;
+    private double minContrast;
+    private ColorContrast.Algorithm contrastAlgorithm;
+    // Luminance of the background by the algorithm, computed once
+    private double backgroundLuminance;
+    // Whether the last validation failed, so that a value is counted as a
+    // failure once however many times it is validated
+    private boolean validationFailed;
+
     /**
      * Default constructor.
      */
@@ -185,18 +567,152 @@ public class ColorPicker
         super("color", null, true);
     }
 
+    /**
+     * Set the metrics of all ColorPicker instances of the application.
+     *
+     * @see MicrometerColorPickerMetrics
+     *
+     * @param metrics
+     *            ColorPickerMetrics, not null. Use
+     *            {@link ColorPickerMetrics#NOOP} to disable metrics.
+     */
+    public static void setMetrics(ColorPickerMetrics metrics) {
+        ColorPicker.metrics = Objects.requireNonNull(metrics,
+                "metrics can't be null");
+    }
+
+    /**
+     * Get the metrics of all ColorPicker instances.
+     *
+     * @return ColorPickerMetrics, {@link ColorPickerMetrics#NOOP} by default.
+     */
+    public static ColorPickerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The value must be in six digits hex format, e.g. #ffffff, unless the
+     * input mode is {@link InputMode#CSSVALUE}.
+     *
+     * @throws IllegalArgumentException
+     *             when the value is not a supported color.
+     */
     @Override
     public void setValue(String value) {
+        ColorPickerMetrics metrics = ColorPicker.metrics;
+        if (!metrics.isEnabled()) {
+            doSetValue(value);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            doSetValue(value);
+        } catch (IllegalArgumentException e) {
+            metrics.validationFailed();
+            throw e;
+        } finally {
+            metrics.valueSet(System.nanoTime() - start);
+        }
+    }
+
+    private void doSetValue(String value) {
         if (value == null) {
             super.setValue(null);
-        } else if (value.matches("#......")) {
+        } else if (HexColor.isValid(value)) {
             super.setValue(value);
+        } else if (inputMode == InputMode.CSSVALUE) {
+            super.setValue(CssColor.toHex(value));
         } else {
             throw new IllegalArgumentException(
                     "Color must be in format #......");
         }
     }
 
+    /**
+     * Get the value as {@link Color}.
+     *
+     * @return Color, or null when value is null.
+     */
+    public Color getColorValue() {
+        String value = getValue();
+        return value == null ? null : Color.fromHex(value);
+    }
+
+    /**
+     * Set the value as {@link Color}. The alpha channel is ignored, as the
+     * value is in six digits hex format.
+     *
+     * @param color
+     *            Color, can be null.
+     */
+    public void setColorValue(Color color) {
+        setValue(color == null ? null : color.toHex());
+    }
+
+    /**
+     * Set to true in order to replace the colors entered by the user with
+     * the closest preset color. The closest color is found in OKLab color
+     * space, which approximates perceived color difference. Snapping has no
+     * effect when presets are set with
+     * {@link #setPresetsDataProvider(DataProvider)}, use
+     * {@link #setPresetsIndex(PresetIndex)} instead.
+     *
+     * @see PresetIndex#nearest(Color)
+     *
+     * @param snapToPresets
+     *            boolean value.
+     */
+    public void setSnapToPresets(boolean snapToPresets) {
+        this.snapToPresets = snapToPresets;
+    }
+
+    /**
+     * Get whether entered colors are replaced with the closest preset.
+     *
+     * @return boolean value.
+     */
+    public boolean isSnapToPresets() {
+        return snapToPresets;
+    }
+
+    @Override
+    protected void setModelValue(String newModelValue, boolean fromClient) {
+        if (fromClient && metrics.isEnabled()) {
+            getUI().ifPresent(metrics::clientColorChanged);
+        }
+        if (fromClient && snapToPresets && HexColor.isValid(newModelValue)) {
+            String snapped = snap(newModelValue);
+            if (!snapped.equals(newModelValue)) {
+                super.setModelValue(snapped, true);
+                // Update the client also when the snapped value is the same
+                // as the previous value
+                setPresentationValue(snapped);
+                return;
+            }
+        }
+        super.setModelValue(newModelValue, fromClient);
+    }
+
+    private String snap(String color) {
+        PresetIndex index = getPresetIndex();
+        ColorPreset preset = index == null ? null
+                : index.nearest(Color.fromHex(color));
+        return preset == null ? color : preset.getColor();
+    }
+
+    private PresetIndex getPresetIndex() {
+        if (presetIndex == null) {
+            if (catalog != null) {
+                presetIndex = catalog.getIndex();
+            } else if (presets != null) {
+                presetIndex = new PresetIndex(presets);
+            }
+        }
+        return presetIndex;
+    }
+
     /**
      * Set predefined color presets.
      * 
@@ -209,7 +725,300 @@ public class ColorPicker
      */
     public void setPresets(List<ColorPreset> presets) {
         Objects.requireNonNull(presets, "presets can't be null");
-        getElement().setPropertyList("presets", presets);
+        clearPresets();
+        this.presets = presets;
+        ColorPickerMetrics metrics = ColorPicker.metrics;
+        if (compactPresets) {
+            getElement().removeProperty("presets");
+            long start = metrics.isEnabled() ? System.nanoTime() : 0;
+            JsonObject json = PresetCodec.encode(presets);
+            if (metrics.isEnabled()) {
+                recordPresets(metrics, presets.size(), json, start);
+            }
+            getElement().setPropertyJson("compactPresets", json);
+        } else if (metrics.isEnabled()) {
+            // Same as setPropertyList, but serialized here to measure it
+            long start = System.nanoTime();
+            JsonArray json = JsonSerializer.toJson(presets);
+            recordPresets(metrics, presets.size(), json, start);
+            getElement().setPropertyJson("presets", json);
+        } else {
+            getElement().setPropertyList("presets", presets);
+        }
+    }
+
+    private static void recordPresets(ColorPickerMetrics metrics, int count,
+            JsonValue json, long start) {
+        long nanos = System.nanoTime() - start;
+        metrics.presetsSet(count,
+                json.toJson().getBytes(StandardCharsets.UTF_8).length, nanos);
+    }
+
+    /**
+     * Set to true in order to send presets set with
+     * {@link #setPresets(List)} in a compact format, where colors are packed
+     * as binary and captions as an array. This reduces the payload and the
+     * parsing time in the browser by several times with large preset lists,
+     * and the presets are decoded only when the field is first used. Preset
+     * catalogs always use the compact format.
+     *
+     * @param compactPresets
+     *            boolean value.
+     */
+    public void setCompactPresets(boolean compactPresets) {
+        this.compactPresets = compactPresets;
+        if (presets != null) {
+            setPresets(presets);
+        }
+    }
+
+    /**
+     * Get whether presets are sent in the compact format.
+     *
+     * @return boolean value.
+     */
+    public boolean isCompactPresets() {
+        return compactPresets;
+    }
+
+    /**
+     * Set predefined color presets from a shared catalog. The presets are
+     * not stored in the component, but are referred to by the id of the
+     * catalog. The browser loads the catalog once and shares it between all
+     * pickers using it.
+     *
+     * @see PresetCatalog
+     *
+     * @param catalog
+     *            PresetCatalog, not null
+     * @throws NullPointerException
+     *             when catalog is null
+     */
+    public void setPresetsCatalog(PresetCatalog catalog) {
+        Objects.requireNonNull(catalog, "catalog can't be null");
+        clearPresets();
+        this.catalog = catalog;
+        getElement().removeProperty("presets");
+        getElement().setProperty("catalog", catalog.getId());
+        getUI().ifPresent(this::updateCatalogUrl);
+    }
+
+    /**
+     * Set predefined color presets to be loaded lazily. The presets are
+     * fetched in pages as the dropdown is scrolled, and the text typed in the
+     * field is passed to the data provider as the filter. Use this with very
+     * large palettes.
+     *
+     * @see ColorPreset
+     *
+     * @param dataProvider
+     *            DataProvider of ColorPreset with String filter, not null
+     * @throws NullPointerException
+     *             when dataProvider is null
+     */
+    public void setPresetsDataProvider(
+            DataProvider<ColorPreset, String> dataProvider) {
+        Objects.requireNonNull(dataProvider, "dataProvider can't be null");
+        clearPresets();
+        presetsDataProvider = dataProvider;
+        getElement().removeProperty("presets");
+        getElement().setProperty("lazy", true);
+        if (isAttached()) {
+            addDataProviderListener();
+        }
+        refreshPresets();
+    }
+
+    /**
+     * Set predefined color presets from a search index. The presets are
+     * loaded lazily and filtered using the index.
+     *
+     * @see PresetIndex
+     * @see #setPresetsDataProvider(DataProvider)
+     *
+     * @param index
+     *            PresetIndex, not null
+     * @throws NullPointerException
+     *             when index is null
+     */
+    public void setPresetsIndex(PresetIndex index) {
+        Objects.requireNonNull(index, "index can't be null");
+        setPresetsDataProvider(index.getDataProvider());
+        presetIndex = index;
+    }
+
+    /**
+     * Get the data provider of lazily loaded presets.
+     *
+     * @return DataProvider, or null when presets are not loaded lazily.
+     */
+    public DataProvider<ColorPreset, String> getPresetsDataProvider() {
+        return presetsDataProvider;
+    }
+
+    @ClientCallable
+    private JsonObject fetchPresets(String filter, int page, int pageSize) {
+        // Arguments come from the browser and can't be trusted
+        if (page < 0 || pageSize < 0 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Invalid page " + page
+                    + " or page size " + pageSize);
+        }
+        int offset = Math.multiplyExact(page, pageSize);
+        JsonObject result = Json.createObject();
+        if (presetsDataProvider == null) {
+            result.put("size", 0);
+            result.put("items", Json.createArray());
+            return result;
+        }
+        String text = filter == null || filter.isEmpty() ? null : filter;
+        List<ColorPreset> items = presetsDataProvider
+                .fetch(new Query<>(offset, pageSize,
+                        Collections.emptyList(), null, text))
+                .collect(Collectors.toList());
+        result.put("size", presetsDataProvider.size(new Query<>(text)));
+        result.put("items", JsonSerializer.toJson(items));
+        return result;
+    }
+
+    private void refreshPresets() {
+        getElement().callJsFunction("clearPresetCache");
+    }
+
+    private void addDataProviderListener() {
+        dataProviderRegistration = presetsDataProvider
+                .addDataProviderListener(event -> refreshPresets());
+    }
+
+    private void clearPresetsDataProvider() {
+        if (presetsDataProvider != null) {
+            removeDataProviderListener();
+            presetsDataProvider = null;
+            getElement().removeProperty("lazy");
+        }
+    }
+
+    private void removeDataProviderListener() {
+        if (dataProviderRegistration != null) {
+            dataProviderRegistration.remove();
+            dataProviderRegistration = null;
+        }
+    }
+
+    /**
+     * Add a listener for timings measured in the browser. The timings of
+     * rendering, processing of presets, CSS color input and the first
+     * opening of the dropdown are collected from all pickers of the page
+     * that have a listener, and sent once per page load, ten seconds after
+     * the first measurement or when the picker that measured it is
+     * detached. The event is fired by that picker only. Until then the
+     * operations are also shown as performance measures in the browser
+     * developer tools, named color-picker:render etc.
+     *
+     * @param listener
+     *            The listener, not null.
+     * @return Registration for removing the listener.
+     */
+    public Registration addClientTimingListener(
+            ComponentEventListener<ClientTimingEvent> listener) {
+        Objects.requireNonNull(listener, "listener can't be null");
+        Registration registration = addListener(ClientTimingEvent.class,
+                listener);
+        getElement().setProperty("clientTiming", true);
+        return () -> {
+            registration.remove();
+            if (!hasListener(ClientTimingEvent.class)) {
+                getElement().setProperty("clientTiming", false);
+            }
+        };
+    }
+
+    /**
+     * Show the color being picked in the style of another component. The
+     * color is written to the given CSS property of the target in the
+     * browser while the user is picking it, without a server round trip.
+     * The value of the field is synchronized according to the value change
+     * mode as usual. When the value is cleared, the property is removed.
+     * <p>
+     * Example: {@code colorPicker.bindPreviewTo(card, "--card-accent")}
+     *
+     * @see #setValueChangeMode(ValueChangeMode)
+     *
+     * @param target
+     *            The component to style, not null.
+     * @param cssProperty
+     *            CSS property name in kebab case, or custom property name,
+     *            not null or empty.
+     * @return Registration for removing the binding.
+     */
+    public Registration bindPreviewTo(Component target, String cssProperty) {
+        Objects.requireNonNull(target, "target can't be null");
+        Objects.requireNonNull(cssProperty, "cssProperty can't be null");
+        if (cssProperty.isEmpty()) {
+            throw new IllegalArgumentException("cssProperty can't be empty");
+        }
+        PreviewBinding binding = new PreviewBinding(target, cssProperty);
+        if (previewBindings == null) {
+            previewBindings = new ArrayList<>();
+        }
+        previewBindings.add(binding);
+        if (isAttached()) {
+            bindPreview(binding);
+        }
+        return () -> {
+            if (previewBindings != null && previewBindings.remove(binding)
+                    && isAttached()) {
+                getElement().callJsFunction("unbindPreview",
+                        binding.target.getElement(), binding.cssProperty);
+            }
+        };
+    }
+
+    private void bindPreview(PreviewBinding binding) {
+        getElement().callJsFunction("bindPreview",
+                binding.target.getElement(), binding.cssProperty);
+    }
+
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        super.onAttach(attachEvent);
+        if (catalog != null) {
+            updateCatalogUrl(attachEvent.getUI());
+        }
+        if (presetsDataProvider != null) {
+            addDataProviderListener();
+        }
+        if (previewBindings != null) {
+            // Bindings are kept by the client only while attached
+            previewBindings.forEach(this::bindPreview);
+        }
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        removeDataProviderListener();
+        super.onDetach(detachEvent);
+    }
+
+    private void updateCatalogUrl(UI ui) {
+        getElement().setProperty("catalogUrl", catalog.getUrl(ui));
+    }
+
+    private void clearPresets() {
+        clearCatalog();
+        clearPresetsDataProvider();
+        if (presets != null) {
+            getElement().removeProperty("compactPresets");
+        }
+        presets = null;
+        presetIndex = null;
+    }
+
+    private void clearCatalog() {
+        if (catalog != null) {
+            catalog = null;
+            getElement().removeProperty("catalog");
+            getElement().removeProperty("catalogUrl");
+        }
     }
 
     @Override
@@ -243,6 +1052,7 @@ public class ColorPicker
      *            The input mode.
      */
     public void setInputMode(InputMode inputMode) {
+        this.inputMode = inputMode;
         if (inputMode == InputMode.NOCSSINPUT) {
             getElement().setProperty("nocssinput", true);
         } else {
@@ -250,6 +1060,15 @@ public class ColorPicker
         }
     }
 
+    /**
+     * Get the input mode.
+     *
+     * @return InputMode
+     */
+    public InputMode getInputMode() {
+        return inputMode;
+    }
+
     /**
      * Set to true in order not to clear the input after color entry.
      * 
@@ -264,6 +1083,119 @@ public class ColorPicker
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The default mode is {@link ValueChangeMode#ON_CHANGE}, where the value
+     * is synchronized when the user commits a color. With
+     * {@link ValueChangeMode#EAGER}, {@link ValueChangeMode#LAZY} and
+     * {@link ValueChangeMode#TIMEOUT} the value is synchronized also while
+     * the user is picking a color from the native color input, rate limited
+     * by the mode and timeout on the client. {@link ValueChangeMode#ON_BLUR}
+     * works like ON_CHANGE. The web component fires a client side only
+     * {@code color-input} event for every change regardless of the mode,
+     * which can be used for live previews.
+     */
+    @Override
+    public void setValueChangeMode(ValueChangeMode valueChangeMode) {
+        Objects.requireNonNull(valueChangeMode,
+                "valueChangeMode can't be null");
+        this.valueChangeMode = valueChangeMode;
+        getElement().setProperty("valueChangeMode",
+                valueChangeMode.name().toLowerCase(Locale.ENGLISH));
+    }
+
+    @Override
+    public ValueChangeMode getValueChangeMode() {
+        return valueChangeMode;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Used with {@link ValueChangeMode#LAZY} and
+     * {@link ValueChangeMode#TIMEOUT}.
+     */
+    @Override
+    public void setValueChangeTimeout(int valueChangeTimeout) {
+        if (valueChangeTimeout < 0) {
+            throw new IllegalArgumentException(
+                    "valueChangeTimeout can't be negative");
+        }
+        this.valueChangeTimeout = valueChangeTimeout;
+        getElement().setProperty("valueChangeTimeout", valueChangeTimeout);
+    }
+
+    @Override
+    public int getValueChangeTimeout() {
+        return valueChangeTimeout;
+    }
+
+    /**
+     * Require colors to have at least the given WCAG 2.x contrast ratio
+     * against the background. The requirement is checked by the default
+     * validator, which is used by Binder.
+     *
+     * @see ColorContrast#nearestCompliant(Color, Color, double)
+     *
+     * @param background
+     *            Background color, null to remove the requirement.
+     * @param minRatio
+     *            Minimum contrast ratio from 1 to 21, e.g. 4.5 for normal
+     *            text at WCAG level AA.
+     */
+    public void setContrastRequirement(Color background, double minRatio) {
+        setContrastRequirement(background, minRatio,
+                ColorContrast.Algorithm.WCAG);
+    }
+
+    /**
+     * Require colors to have at least the given contrast against the
+     * background. The requirement is checked by the default validator, which
+     * is used by Binder.
+     *
+     * @param background
+     *            Background color, null to remove the requirement.
+     * @param minContrast
+     *            Minimum WCAG contrast ratio, or minimum absolute APCA Lc.
+     * @param algorithm
+     *            The contrast algorithm, not null.
+     */
+    public void setContrastRequirement(Color background, double minContrast,
+            ColorContrast.Algorithm algorithm) {
+        Objects.requireNonNull(algorithm, "algorithm can't be null");
+        if (minContrast < 0) {
+            throw new IllegalArgumentException(
+                    "minContrast can't be negative");
+        }
+        contrastBackground = background;
+        this.minContrast = minContrast;
+        contrastAlgorithm = algorithm;
+        if (background != null) {
+            backgroundLuminance = algorithm == ColorContrast.Algorithm.APCA
+                    ? ColorContrast.apcaLuminance(background.getRGB())
+                    : ColorContrast.relativeLuminance(background.getRGB());
+        }
+    }
+
+    /**
+     * Get the background of the contrast requirement.
+     *
+     * @return Color, or null when there is no requirement.
+     */
+    public Color getContrastBackground() {
+        return contrastBackground;
+    }
+
+    /**
+     * Get the minimum contrast of the contrast requirement.
+     *
+     * @return The minimum WCAG ratio or APCA Lc.
+     */
+    public double getMinContrast() {
+        return minContrast;
+    }
+
     @Override
     public Validator<String> getDefaultValidator() {
         return (value, context) -> checkValidity(value);
@@ -271,18 +1203,42 @@ public class ColorPicker
 
     private ValidationResult checkValidity(String value) {
         boolean invalid = this.isInvalid() && value == null;
-        if (!invalid) {
+        ValidationResult result = invalid
+                ? ValidationResult.error("Input is not a color")
+                : checkContrast(value);
+        if (result.isError() && !validationFailed) {
+            metrics.validationFailed();
+        }
+        validationFailed = result.isError();
+        return result;
+    }
+
+    private ValidationResult checkContrast(String value) {
+        if (contrastBackground == null || !HexColor.isValid(value)) {
             return ValidationResult.ok();
-        } else {
-            return ValidationResult.error("Input is not a color");
         }
+        int rgb = HexColor.parse(value);
+        double contrast = contrastAlgorithm == ColorContrast.Algorithm.APCA
+                ? Math.abs(ColorContrast.apcaContrast(
+                        ColorContrast.apcaLuminance(rgb),
+                        backgroundLuminance))
+                : ColorContrast.contrastRatio(
+                        ColorContrast.relativeLuminance(rgb),
+                        backgroundLuminance);
+        if (contrast >= minContrast) {
+            return ValidationResult.ok();
+        }
+        return ValidationResult.error("Contrast against "
+                + contrastBackground.toHex() + " is too low");
     }
 
-    private static String sanitize(String html) {
-        Safelist safelist = Safelist.relaxed().addAttributes(":all", "style")
-                .addEnforcedAttribute("a", "rel", "nofollow");
-        String sanitized = Jsoup.clean(html, "", safelist,
-                new Document.OutputSettings().prettyPrint(false));
-        return sanitized;
+    private static class PreviewBinding implements Serializable {
+        private final Component target;
+        private final String cssProperty;
+
+        private PreviewBinding(Component target, String cssProperty) {
+            this.target = target;
+            this.cssProperty = cssProperty;
+        }
     }
 }
@@ -0,0 +1,90 @@
+package org.vaadin.addons.tatu;
+
+import com.vaadin.flow.component.UI;
+
+/**
+ * Instrumentation hook of {@link ColorPicker}, set with
+ * {@link ColorPicker#setMetrics(ColorPickerMetrics)}. All methods have empty
+ * default implementations, so an implementation needs to override only the
+ * ones it is interested in. See {@link MicrometerColorPickerMetrics} for a
+ * Micrometer based implementation.
+ * <p>
+ * The methods are called from request threads of all sessions, so they must
+ * be thread safe and fast. Timings are measured only when
+ * {@link #isEnabled()} returns true, so the default {@link #NOOP} costs
+ * nothing but the calls to the empty methods.
+ */
+public interface ColorPickerMetrics {
+
+    /**
+     * Metrics that do nothing, used by default.
+     */
+    ColorPickerMetrics NOOP = new ColorPickerMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    /**
+     * Get whether metrics are recorded. When false, timings are not
+     * measured.
+     *
+     * @return boolean value, true by default.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Called when a value is set on the server side with
+     * {@link ColorPicker#setValue(String)}.
+     *
+     * @param nanos
+     *            Time spent in setValue in nanoseconds.
+     */
+    default void valueSet(long nanos) {
+    }
+
+    /**
+     * Called when the default validator of {@link ColorPicker} rejects a
+     * value that passed the previous validation, or when
+     * {@link ColorPicker#setValue(String)} throws for an unsupported color.
+     * Validating the same rejected value again is not counted.
+     */
+    default void validationFailed() {
+    }
+
+    /**
+     * Called when an HTML caption is sanitized by {@link HtmlSanitizer}.
+     *
+     * @param cacheHit
+     *            true when the result was found in the cache.
+     */
+    default void sanitized(boolean cacheHit) {
+    }
+
+    /**
+     * Called when presets are set with
+     * {@link ColorPicker#setPresets(java.util.List)}.
+     *
+     * @param count
+     *            Number of presets.
+     * @param bytes
+     *            Size of the presets as JSON in bytes.
+     * @param nanos
+     *            Time spent serializing the presets in nanoseconds.
+     */
+    default void presetsSet(int count, int bytes, long nanos) {
+    }
+
+    /**
+     * Called when the color is changed in the browser and the change is
+     * received on the server.
+     *
+     * @param ui
+     *            The UI of the picker, not null.
+     */
+    default void clientColorChanged(UI ui) {
+    }
+}
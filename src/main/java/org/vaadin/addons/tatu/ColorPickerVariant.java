@@ -6,7 +6,15 @@ public enum ColorPickerVariant implements ThemeVariant {
     COMPACT("compact"), LUMO_SMALL("small"), LUMO_ALIGN_LEFT(
             "align-left"), LUMO_ALIGN_CENTER("align-center"), LUMO_ALIGN_RIGHT(
                     "align-right"), LUMO_HELPER_ABOVE_FIELD(
-                            "helper-above-field");
+                            "helper-above-field"),
+    /**
+     * Adds a button that opens the presets as a grid of color swatches.
+     * Only the swatches in view are rendered, so the grid suits palettes of
+     * thousands of colors. Lazy presets are loaded page by page while
+     * scrolling. The grid can be used with arrow, page up and down, home
+     * and end keys, and a swatch is selected with enter or space.
+     */
+    SWATCH_GRID("swatch-grid");
 
     private final String variant;
 
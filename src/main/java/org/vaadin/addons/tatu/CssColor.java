@@ -0,0 +1,595 @@
+package org.vaadin.addons.tatu;
+
+import java.util.Locale;
+
+/**
+ * Parsing and formatting of CSS color strings on the server. Supports the
+ * same syntax as the color-picker web component: named colors, transparent,
+ * hex with 3, 4, 6 or 8 digits, and the rgb(), rgba(), hsl(), hsla(), hwb(),
+ * lab(), lch(), oklab() and oklch() functions in both modern and legacy comma
+ * separated syntax.
+ * <p>
+ * Colors are returned as packed ints in 0xAARRGGBB format. The parser is a
+ * plain character scanner, it does not use regular expressions and does not
+ * allocate for named or hex colors. Out of gamut colors are clipped to sRGB.
+ *
+ * @see ColorConversions
+ */
+public final class CssColor {
+
+    // Sorted for binary search, keep in sync with color-parser.ts
+    private static final String[] NAMES = { "aliceblue", "antiquewhite",
+            "aqua", "aquamarine", "azure", "beige", "bisque", "black",
+            "blanchedalmond", "blue", "blueviolet", "brown", "burlywood",
+            "cadetblue", "chartreuse", "chocolate", "coral", "cornflowerblue",
+            "cornsilk", "crimson", "cyan", "darkblue", "darkcyan",
+            "darkgoldenrod", "darkgray", "darkgreen", "darkgrey", "darkkhaki",
+            "darkmagenta", "darkolivegreen", "darkorange", "darkorchid",
+            "darkred", "darksalmon", "darkseagreen", "darkslateblue",
+            "darkslategray", "darkslategrey", "darkturquoise", "darkviolet",
+            "deeppink", "deepskyblue", "dimgray", "dimgrey", "dodgerblue",
+            "firebrick", "floralwhite", "forestgreen", "fuchsia", "gainsboro",
+            "ghostwhite", "gold", "goldenrod", "gray", "green", "greenyellow",
+            "grey", "honeydew", "hotpink", "indianred", "indigo", "ivory",
+            "khaki", "lavender", "lavenderblush", "lawngreen", "lemonchiffon",
+            "lightblue", "lightcoral", "lightcyan", "lightgoldenrodyellow",
+            "lightgray", "lightgreen", "lightgrey", "lightpink", "lightsalmon",
+            "lightseagreen", "lightskyblue", "lightslategray",
+            "lightslategrey", "lightsteelblue", "lightyellow", "lime",
+            "limegreen", "linen", "magenta", "maroon", "mediumaquamarine",
+            "mediumblue", "mediumorchid", "mediumpurple", "mediumseagreen",
+            "mediumslateblue", "mediumspringgreen", "mediumturquoise",
+            "mediumvioletred", "midnightblue", "mintcream", "mistyrose",
+            "moccasin", "navajowhite", "navy", "oldlace", "olive", "olivedrab",
+            "orange", "orangered", "orchid", "palegoldenrod", "palegreen",
+            "paleturquoise", "palevioletred", "papayawhip", "peachpuff",
+            "peru", "pink", "plum", "powderblue", "purple", "rebeccapurple",
+            "red", "rosybrown", "royalblue", "saddlebrown", "salmon",
+            "sandybrown", "seagreen", "seashell", "sienna", "silver",
+            "skyblue", "slateblue", "slategray", "slategrey", "snow",
+            "springgreen", "steelblue", "tan", "teal", "thistle", "tomato",
+            "turquoise", "violet", "wheat", "white", "whitesmoke", "yellow",
+            "yellowgreen" };
+
+    private static final int[] VALUES = { 0xf0f8ff, 0xfaebd7, 0x00ffff,
+            0x7fffd4, 0xf0ffff, 0xf5f5dc, 0xffe4c4, 0x000000, 0xffebcd,
+            0x0000ff, 0x8a2be2, 0xa52a2a, 0xdeb887, 0x5f9ea0, 0x7fff00,
+            0xd2691e, 0xff7f50, 0x6495ed, 0xfff8dc, 0xdc143c, 0x00ffff,
+            0x00008b, 0x008b8b, 0xb8860b, 0xa9a9a9, 0x006400, 0xa9a9a9,
+            0xbdb76b, 0x8b008b, 0x556b2f, 0xff8c00, 0x9932cc, 0x8b0000,
+            0xe9967a, 0x8fbc8f, 0x483d8b, 0x2f4f4f, 0x2f4f4f, 0x00ced1,
+            0x9400d3, 0xff1493, 0x00bfff, 0x696969, 0x696969, 0x1e90ff,
+            0xb22222, 0xfffaf0, 0x228b22, 0xff00ff, 0xdcdcdc, 0xf8f8ff,
+            0xffd700, 0xdaa520, 0x808080, 0x008000, 0xadff2f, 0x808080,
+            0xf0fff0, 0xff69b4, 0xcd5c5c, 0x4b0082, 0xfffff0, 0xf0e68c,
+            0xe6e6fa, 0xfff0f5, 0x7cfc00, 0xfffacd, 0xadd8e6, 0xf08080,
+            0xe0ffff, 0xfafad2, 0xd3d3d3, 0x90ee90, 0xd3d3d3, 0xffb6c1,
+            0xffa07a, 0x20b2aa, 0x87cefa, 0x778899, 0x778899, 0xb0c4de,
+            0xffffe0, 0x00ff00, 0x32cd32, 0xfaf0e6, 0xff00ff, 0x800000,
+            0x66cdaa, 0x0000cd, 0xba55d3, 0x9370db, 0x3cb371, 0x7b68ee,
+            0x00fa9a, 0x48d1cc, 0xc71585, 0x191970, 0xf5fffa, 0xffe4e1,
+            0xffe4b5, 0xffdead, 0x000080, 0xfdf5e6, 0x808000, 0x6b8e23,
+            0xffa500, 0xff4500, 0xda70d6, 0xeee8aa, 0x98fb98, 0xafeeee,
+            0xdb7093, 0xffefd5, 0xffdab9, 0xcd853f, 0xffc0cb, 0xdda0dd,
+            0xb0e0e6, 0x800080, 0x663399, 0xff0000, 0xbc8f8f, 0x4169e1,
+            0x8b4513, 0xfa8072, 0xf4a460, 0x2e8b57, 0xfff5ee, 0xa0522d,
+            0xc0c0c0, 0x87ceeb, 0x6a5acd, 0x708090, 0x708090, 0xfffafa,
+            0x00ff7f, 0x4682b4, 0xd2b48c, 0x008080, 0xd8bfd8, 0xff6347,
+            0x40e0d0, 0xee82ee, 0xf5deb3, 0xffffff, 0xf5f5f5, 0xffff00,
+            0x9acd32 };
+
+    // Returned by the parser for invalid input, no valid argb is negative
+    // when stored to a long
+    private static final long INVALID = -1;
+
+    private static final int UNIT_NONE = 0;
+    private static final int UNIT_PERCENT = 1;
+    private static final int UNIT_DEG = 2;
+    private static final int UNIT_RAD = 3;
+    private static final int UNIT_GRAD = 4;
+    private static final int UNIT_TURN = 5;
+
+    private CssColor() {
+    }
+
+    /**
+     * Check whether the given string is a CSS color supported by
+     * {@link #parse(String)}.
+     *
+     * @param css
+     *            String to check, can be null.
+     * @return true if the value can be parsed.
+     */
+    public static boolean isValid(String css) {
+        return css != null && parseOrInvalid(css) != INVALID;
+    }
+
+    /**
+     * Parse a CSS color.
+     *
+     * @param css
+     *            Color in CSS syntax, not null.
+     * @return The color in 0xAARRGGBB format.
+     * @throws IllegalArgumentException
+     *             when the color is not supported.
+     * @throws NullPointerException
+     *             when css is null.
+     */
+    public static int parse(String css) {
+        long argb = parseOrInvalid(css);
+        if (argb == INVALID) {
+            throw new IllegalArgumentException(
+                    "Not a supported CSS color: " + css);
+        }
+        return (int) argb;
+    }
+
+    /**
+     * Parse a CSS color and format it as six digits hex color, e.g. #ff0000,
+     * as used by {@link ColorPicker}. The alpha channel is ignored.
+     *
+     * @param css
+     *            Color in CSS syntax, not null.
+     * @return Color in six digits hex format.
+     * @throws IllegalArgumentException
+     *             when the color is not supported.
+     */
+    public static String toHex(String css) {
+        if (HexColor.isValid(css)) {
+            return css.toLowerCase(Locale.ENGLISH);
+        }
+        return Color.of(parse(css)).toHex();
+    }
+
+    private static long parseOrInvalid(String css) {
+        int start = 0;
+        int end = css.length();
+        while (start < end && isSpace(css.charAt(start))) {
+            start++;
+        }
+        while (end > start && isSpace(css.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            return INVALID;
+        }
+        if (css.charAt(start) == '#') {
+            return parseHex(css, start + 1, end);
+        }
+        if (css.charAt(end - 1) == ')') {
+            return new Scanner(css, start, end).parseFunction();
+        }
+        if (css.regionMatches(true, start, "transparent", 0, end - start)
+                && end - start == 11) {
+            return 0;
+        }
+        int index = findName(css, start, end);
+        return index < 0 ? INVALID : 0xff000000L | VALUES[index];
+    }
+
+    private static int findName(String css, int start, int end) {
+        int length = end - start;
+        int low = 0;
+        int high = NAMES.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            String name = NAMES[mid];
+            int cmp = 0;
+            int n = Math.min(length, name.length());
+            for (int i = 0; i < n && cmp == 0; i++) {
+                cmp = name.charAt(i)
+                        - Character.toLowerCase(css.charAt(start + i));
+            }
+            if (cmp == 0) {
+                cmp = name.length() - length;
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static long parseHex(String css, int start, int end) {
+        int length = end - start;
+        if (length != 3 && length != 4 && length != 6 && length != 8) {
+            return INVALID;
+        }
+        boolean isShort = length < 6;
+        int digits = isShort ? 1 : 2;
+        long argb = 0;
+        for (int i = 0; i < 4; i++) {
+            int value;
+            if (i * digits >= length) {
+                value = 255;
+            } else if (isShort) {
+                value = HexColor.digit(css.charAt(start + i)) * 17;
+            } else {
+                int high = HexColor.digit(css.charAt(start + i * 2));
+                int low = HexColor.digit(css.charAt(start + i * 2 + 1));
+                value = high < 0 || low < 0 ? -1 : high * 16 + low;
+            }
+            if (value < 0) {
+                return INVALID;
+            }
+            // Channels are read in r, g, b, a order
+            argb |= i == 3 ? (long) value << 24 : (long) value << (16 - i * 8);
+        }
+        return argb;
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    /**
+     * Format a color with the rgb() function, e.g. rgb(255 0 0) or
+     * rgb(255 0 0 / 0.5).
+     *
+     * @param argb
+     *            Color in 0xAARRGGBB format.
+     * @return CSS color string.
+     */
+    public static String toRgb(int argb) {
+        StringBuilder builder = new StringBuilder(28).append("rgb(")
+                .append((argb >>> 16) & 0xff).append(' ')
+                .append((argb >>> 8) & 0xff).append(' ').append(argb & 0xff);
+        return appendAlpha(builder, argb).append(')').toString();
+    }
+
+    /**
+     * Format a color with the hsl() function, e.g. hsl(0 100% 50%).
+     *
+     * @param argb
+     *            Color in 0xAARRGGBB format.
+     * @return CSS color string.
+     */
+    public static String toHsl(int argb) {
+        float[] hsl = new float[3];
+        ColorConversions.rgbToHsl(argb, hsl, 0);
+        StringBuilder builder = new StringBuilder(32).append("hsl(");
+        appendNumber(builder, hsl[0], 1).append(' ');
+        appendNumber(builder, hsl[1] * 100, 1).append("% ");
+        appendNumber(builder, hsl[2] * 100, 1).append('%');
+        return appendAlpha(builder, argb).append(')').toString();
+    }
+
+    /**
+     * Format a color with the oklab() function, e.g. oklab(0.628 0.2249
+     * 0.1258).
+     *
+     * @param argb
+     *            Color in 0xAARRGGBB format.
+     * @return CSS color string.
+     */
+    public static String toOklab(int argb) {
+        float[] oklab = new float[3];
+        ColorConversions.rgbToOklab(argb, oklab, 0);
+        StringBuilder builder = new StringBuilder(36).append("oklab(");
+        appendNumber(builder, oklab[0], 4).append(' ');
+        appendNumber(builder, oklab[1], 4).append(' ');
+        appendNumber(builder, oklab[2], 4);
+        return appendAlpha(builder, argb).append(')').toString();
+    }
+
+    /**
+     * Format a color with the oklch() function, e.g. oklch(0.628 0.2577
+     * 29.23).
+     *
+     * @param argb
+     *            Color in 0xAARRGGBB format.
+     * @return CSS color string.
+     */
+    public static String toOklch(int argb) {
+        float[] oklch = new float[3];
+        ColorConversions.rgbToOklch(argb, oklch, 0);
+        StringBuilder builder = new StringBuilder(36).append("oklch(");
+        appendNumber(builder, oklch[0], 4).append(' ');
+        appendNumber(builder, oklch[1], 4).append(' ');
+        appendNumber(builder, oklch[2], 2);
+        return appendAlpha(builder, argb).append(')').toString();
+    }
+
+    private static StringBuilder appendAlpha(StringBuilder builder,
+            int argb) {
+        int alpha = argb >>> 24;
+        if (alpha != 255) {
+            builder.append(" / ");
+            appendNumber(builder, alpha / 255.0, 3);
+        }
+        return builder;
+    }
+
+    private static StringBuilder appendNumber(StringBuilder builder,
+            double value, int decimals) {
+        // Rounded to the decimals without trailing zeros, e.g. 0.5 or 12
+        long scale = 1;
+        for (int i = 0; i < decimals; i++) {
+            scale *= 10;
+        }
+        long scaled = Math.round(value * scale);
+        if (scaled < 0) {
+            builder.append('-');
+            scaled = -scaled;
+        }
+        builder.append(scaled / scale);
+        long fraction = scaled % scale;
+        if (fraction != 0) {
+            builder.append('.');
+            for (long digit = scale / 10; fraction != 0; digit /= 10) {
+                builder.append((char) ('0' + fraction / digit));
+                fraction %= digit;
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * Scanner for the arguments of a color function.
+     */
+    private static class Scanner {
+        private final String src;
+        private final int end;
+        private int pos;
+        private final double[] values = new double[4];
+        private final int[] units = new int[4];
+        private int count;
+        private boolean hasAlpha;
+
+        private Scanner(String src, int start, int end) {
+            this.src = src;
+            this.pos = start;
+            this.end = end;
+        }
+
+        private long parseFunction() {
+            int rgb;
+            if (matchWord("rgba") || matchWord("rgb")) {
+                if (!readArguments()) {
+                    return INVALID;
+                }
+                rgb = ColorConversions.rgb(channel(0, 255) / 255,
+                        channel(1, 255) / 255, channel(2, 255) / 255);
+            } else if (matchWord("hsla") || matchWord("hsl")) {
+                if (!readArguments()) {
+                    return INVALID;
+                }
+                double h = hue(0);
+                if (Double.isNaN(h)) {
+                    return INVALID;
+                }
+                rgb = ColorConversions.hslToRgb(h, values[1] / 100,
+                        values[2] / 100);
+            } else if (matchWord("hwb")) {
+                if (!readArguments()) {
+                    return INVALID;
+                }
+                double h = hue(0);
+                if (Double.isNaN(h)) {
+                    return INVALID;
+                }
+                rgb = ColorConversions.hwbToRgb(h, values[1] / 100,
+                        values[2] / 100);
+            } else if (matchWord("oklab")) {
+                if (!readArguments()) {
+                    return INVALID;
+                }
+                rgb = ColorConversions.oklabToRgb(channel(0, 1),
+                        channel(1, 0.4), channel(2, 0.4));
+            } else if (matchWord("oklch")) {
+                if (!readArguments()) {
+                    return INVALID;
+                }
+                double h = hue(2);
+                if (Double.isNaN(h)) {
+                    return INVALID;
+                }
+                rgb = ColorConversions.oklchToRgb(channel(0, 1),
+                        channel(1, 0.4), h);
+            } else if (matchWord("lab")) {
+                if (!readArguments()) {
+                    return INVALID;
+                }
+                rgb = ColorConversions.labToRgb(channel(0, 100),
+                        channel(1, 125), channel(2, 125));
+            } else if (matchWord("lch")) {
+                if (!readArguments()) {
+                    return INVALID;
+                }
+                double h = hue(2);
+                if (Double.isNaN(h)) {
+                    return INVALID;
+                }
+                double c = channel(1, 150);
+                double radians = Math.toRadians(h);
+                rgb = ColorConversions.labToRgb(channel(0, 100),
+                        c * Math.cos(radians), c * Math.sin(radians));
+            } else {
+                return INVALID;
+            }
+            double alpha = hasAlpha ? channel(3, 1) : 1;
+            int a = alpha >= 1 ? 255
+                    : alpha > 0 ? (int) (alpha * 255 + 0.5) : 0;
+            return ((long) a << 24) | rgb;
+        }
+
+        private boolean matchWord(String word) {
+            // Case insensitive match of a lower case word at the position
+            if (pos + word.length() > end || !src.regionMatches(true, pos,
+                    word, 0, word.length())) {
+                return false;
+            }
+            pos += word.length();
+            return true;
+        }
+
+        private void skipSpaces() {
+            while (pos < end && isSpace(src.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private char peek() {
+            return pos < end ? src.charAt(pos) : 0;
+        }
+
+        private boolean readArguments() {
+            // Reads "(a b c / d)" or legacy "(a, b, c, d)", the parenthesis
+            // must follow the function name without whitespace
+            if (peek() != '(') {
+                return false;
+            }
+            pos++;
+            count = 0;
+            hasAlpha = false;
+            boolean commas = false;
+            while (true) {
+                skipSpaces();
+                if (peek() == ')') {
+                    pos++;
+                    break;
+                }
+                if (count > 0) {
+                    char c = peek();
+                    if (c == ',') {
+                        if (count == 1) {
+                            commas = true;
+                        } else if (!commas) {
+                            return false;
+                        }
+                        pos++;
+                        skipSpaces();
+                        if (count == 3) {
+                            hasAlpha = true;
+                        }
+                    } else if (c == '/') {
+                        if (commas || count != 3) {
+                            return false;
+                        }
+                        pos++;
+                        skipSpaces();
+                        hasAlpha = true;
+                    } else if (commas) {
+                        return false;
+                    }
+                }
+                if (count == 4 || !readNumber(count)) {
+                    return false;
+                }
+                count++;
+            }
+            return pos == end && (count == 3 || (count == 4 && hasAlpha));
+        }
+
+        private boolean readNumber(int index) {
+            // Reads a number with optional unit to the argument at the index
+            if (matchWord("none")) {
+                values[index] = 0;
+                units[index] = UNIT_NONE;
+                return true;
+            }
+            int start = pos;
+            char c = peek();
+            if (c == '+' || c == '-') {
+                pos++;
+            }
+            int digits = skipDigits();
+            if (peek() == '.') {
+                pos++;
+                digits += skipDigits();
+            }
+            if (digits == 0) {
+                return false;
+            }
+            if ((peek() | 32) == 'e' && pos + 1 < end) {
+                char next = src.charAt(pos + 1);
+                boolean digit = next >= '0' && next <= '9';
+                if (digit || next == '+' || next == '-') {
+                    pos += digit ? 1 : 2;
+                    if (skipDigits() == 0) {
+                        return false;
+                    }
+                }
+            }
+            values[index] = toDouble(start, pos);
+            if (peek() == '%') {
+                pos++;
+                units[index] = UNIT_PERCENT;
+            } else if (matchWord("deg")) {
+                units[index] = UNIT_DEG;
+            } else if (matchWord("grad")) {
+                units[index] = UNIT_GRAD;
+            } else if (matchWord("rad")) {
+                units[index] = UNIT_RAD;
+            } else if (matchWord("turn")) {
+                units[index] = UNIT_TURN;
+            } else {
+                units[index] = UNIT_NONE;
+            }
+            return true;
+        }
+
+        private double toDouble(int start, int stop) {
+            // Integers, the usual case, are converted without a substring
+            long value = 0;
+            boolean negative = false;
+            int i = start;
+            char first = src.charAt(i);
+            if (first == '+' || first == '-') {
+                negative = first == '-';
+                i++;
+            }
+            if (stop - i < 10) {
+                for (; i < stop; i++) {
+                    char c = src.charAt(i);
+                    if (c < '0' || c > '9') {
+                        return Double.parseDouble(src.substring(start, stop));
+                    }
+                    value = value * 10 + (c - '0');
+                }
+                return negative ? -value : value;
+            }
+            return Double.parseDouble(src.substring(start, stop));
+        }
+
+        private int skipDigits() {
+            int start = pos;
+            while (pos < end) {
+                char c = src.charAt(pos);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                pos++;
+            }
+            return pos - start;
+        }
+
+        private double hue(int index) {
+            double value = values[index];
+            switch (units[index]) {
+            case UNIT_RAD:
+                return Math.toDegrees(value);
+            case UNIT_GRAD:
+                return value * 0.9;
+            case UNIT_TURN:
+                return value * 360;
+            case UNIT_PERCENT:
+                return Double.NaN;
+            default:
+                return value;
+            }
+        }
+
+        // Channel given as percentage or as number with the given 100%
+        // reference
+        private double channel(int index, double reference) {
+            return units[index] == UNIT_PERCENT
+                    ? values[index] * reference / 100
+                    : values[index];
+        }
+    }
+}
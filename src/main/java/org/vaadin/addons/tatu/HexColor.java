@@ -0,0 +1,128 @@
+package org.vaadin.addons.tatu;
+
+/**
+ * Validation and parsing of six digit hex color strings, e.g. #ffffff, as
+ * used by {@link ColorPicker} and {@link ColorPicker.ColorPreset}.
+ * <p>
+ * The checks are done with a plain character scan, so they do not compile
+ * regular expressions nor allocate, and are safe to use in hot paths such as
+ * Binder converters.
+ */
+public final class HexColor {
+
+    private static final byte[] DIGITS = new byte[128];
+    private static final char[] HEX_PAIRS = new char[512];
+
+    static {
+        for (int i = 0; i < DIGITS.length; i++) {
+            DIGITS[i] = -1;
+        }
+        for (int i = 0; i < 10; i++) {
+            DIGITS['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            DIGITS['a' + i] = (byte) (10 + i);
+            DIGITS['A' + i] = (byte) (10 + i);
+        }
+        char[] digits = "0123456789abcdef".toCharArray();
+        for (int i = 0; i < 256; i++) {
+            HEX_PAIRS[i * 2] = digits[i >>> 4];
+            HEX_PAIRS[i * 2 + 1] = digits[i & 0xf];
+        }
+    }
+
+    private HexColor() {
+    }
+
+    /**
+     * Check whether the given string is a color in six digits hex format,
+     * e.g. #ffffff. Both lower and upper case digits are accepted.
+     *
+     * @param value
+     *            String to check, can be null.
+     * @return true if the value is a valid hex color.
+     */
+    public static boolean isValid(String value) {
+        if (value == null || value.length() != 7 || value.charAt(0) != '#') {
+            return false;
+        }
+        for (int i = 1; i < 7; i++) {
+            if (digit(value.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse a color in six digits hex format, e.g. #ffffff, to an int of the
+     * form 0xRRGGBB.
+     *
+     * @param value
+     *            Color in six digits hex string, not null.
+     * @return The color as packed int.
+     * @throws IllegalArgumentException
+     *             when color string does not match pattern.
+     * @throws NullPointerException
+     *             when value is null.
+     */
+    public static int parse(String value) {
+        if (value.length() != 7 || value.charAt(0) != '#') {
+            throw new IllegalArgumentException(
+                    "Color must be in format #......");
+        }
+        int rgb = 0;
+        for (int i = 1; i < 7; i++) {
+            int digit = digit(value.charAt(i));
+            if (digit < 0) {
+                throw new IllegalArgumentException(
+                        "Color must be in format #......");
+            }
+            rgb = (rgb << 4) | digit;
+        }
+        return rgb;
+    }
+
+    /**
+     * Format a color of the form 0xRRGGBB in six digits lower case hex
+     * format, e.g. #ffffff.
+     *
+     * @param rgb
+     *            The color as packed int, alpha bits are ignored.
+     * @return String value.
+     */
+    public static String format(int rgb) {
+        char[] chars = new char[7];
+        chars[0] = '#';
+        writePair(chars, 1, (rgb >>> 16) & 0xff);
+        writePair(chars, 3, (rgb >>> 8) & 0xff);
+        writePair(chars, 5, rgb & 0xff);
+        return new String(chars);
+    }
+
+    /**
+     * Write a byte as two lower case hex digits.
+     *
+     * @param chars
+     *            The target array.
+     * @param index
+     *            Index of the first digit.
+     * @param value
+     *            The byte, 0-255.
+     */
+    static void writePair(char[] chars, int index, int value) {
+        chars[index] = HEX_PAIRS[value * 2];
+        chars[index + 1] = HEX_PAIRS[value * 2 + 1];
+    }
+
+    /**
+     * Get the value of a single hex digit.
+     *
+     * @param c
+     *            The character.
+     * @return Value 0-15, or -1 if the character is not a hex digit.
+     */
+    public static int digit(char c) {
+        return c < DIGITS.length ? DIGITS[c] : -1;
+    }
+}
@@ -0,0 +1,172 @@
+package org.vaadin.addons.tatu;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.safety.Safelist;
+
+/**
+ * Sanitizer for HTML captions of {@link ColorPicker.ColorPreset}.
+ * <p>
+ * The Safelist is built once per sanitizer and results for recently used
+ * captions, including their plain text, are memoized in a bounded LRU cache,
+ * so palettes with repeating captions are cheap to load. Instances are
+ * thread safe and can be shared. The sanitizer used by the presets can be
+ * replaced with {@link #setDefault(HtmlSanitizer)}, e.g. to use a stricter
+ * Safelist.
+ */
+public class HtmlSanitizer {
+
+    /**
+     * Default number of sanitized captions kept in the cache.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 1000;
+
+    private static volatile HtmlSanitizer defaultSanitizer = new HtmlSanitizer(
+            defaultSafelist());
+
+    private final Safelist safelist;
+    private final Document.OutputSettings outputSettings = new Document.OutputSettings()
+            .prettyPrint(false);
+    private final Map<String, Entry> cache;
+
+    /**
+     * Create sanitizer with default cache size.
+     *
+     * @param safelist
+     *            The Safelist to use, not null. It must not be modified after
+     *            passing it here.
+     */
+    public HtmlSanitizer(Safelist safelist) {
+        this(safelist, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Create sanitizer.
+     *
+     * @param safelist
+     *            The Safelist to use, not null. It must not be modified after
+     *            passing it here.
+     * @param cacheSize
+     *            Maximum number of cached results, 0 disables caching.
+     */
+    public HtmlSanitizer(Safelist safelist, int cacheSize) {
+        this.safelist = Objects.requireNonNull(safelist,
+                "safelist can't be null");
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException(
+                    "cacheSize can't be negative");
+        }
+        cache = cacheSize == 0 ? null
+                : new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(
+                            Map.Entry<String, Entry> eldest) {
+                        return size() > cacheSize;
+                    }
+                };
+    }
+
+    /**
+     * Sanitize the html.
+     *
+     * @param html
+     *            The html, not null.
+     * @return Sanitized html.
+     */
+    public String sanitize(String html) {
+        return getEntry(html, true).html;
+    }
+
+    /**
+     * Get the plain text content of the sanitized html.
+     *
+     * @param html
+     *            The html, not null.
+     * @return Text content with whitespace normalized.
+     */
+    public String toText(String html) {
+        Entry entry = getEntry(html, false);
+        String text = entry.text;
+        if (text == null) {
+            text = Jsoup.parseBodyFragment(entry.html).text();
+            entry.text = text;
+        }
+        return text;
+    }
+
+    private Entry getEntry(String html, boolean record) {
+        Objects.requireNonNull(html, "html can't be null");
+        if (cache == null) {
+            if (record) {
+                ColorPicker.getMetrics().sanitized(false);
+            }
+            return new Entry(clean(html));
+        }
+        Entry entry;
+        synchronized (cache) {
+            entry = cache.get(html);
+        }
+        if (record) {
+            ColorPicker.getMetrics().sanitized(entry != null);
+        }
+        if (entry == null) {
+            entry = new Entry(clean(html));
+            synchronized (cache) {
+                cache.put(html, entry);
+            }
+        }
+        return entry;
+    }
+
+    private String clean(String html) {
+        // OutputSettings holds per call encoder state, hence the clone
+        return Jsoup.clean(html, "", safelist, outputSettings.clone());
+    }
+
+    /**
+     * Get the Safelist used by default, which is
+     * {@link Safelist#relaxed()} with style attributes allowed and
+     * rel=nofollow enforced for links.
+     *
+     * @return A new Safelist instance.
+     */
+    public static Safelist defaultSafelist() {
+        return Safelist.relaxed().addAttributes(":all", "style")
+                .addEnforcedAttribute("a", "rel", "nofollow");
+    }
+
+    /**
+     * Get the sanitizer used for HTML captions.
+     *
+     * @return HtmlSanitizer
+     */
+    public static HtmlSanitizer getDefault() {
+        return defaultSanitizer;
+    }
+
+    /**
+     * Set the sanitizer used for HTML captions. Affects presets whose caption
+     * is set after this call.
+     *
+     * @param sanitizer
+     *            HtmlSanitizer, not null.
+     */
+    public static void setDefault(HtmlSanitizer sanitizer) {
+        defaultSanitizer = Objects.requireNonNull(sanitizer,
+                "sanitizer can't be null");
+    }
+
+    private static class Entry {
+        private final String html;
+        // Computed on demand, benign race as the result is always the same
+        private volatile String text;
+
+        private Entry(String html) {
+            this.html = html;
+        }
+    }
+}
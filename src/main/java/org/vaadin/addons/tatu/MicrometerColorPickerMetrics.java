@@ -0,0 +1,144 @@
+package org.vaadin.addons.tatu;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import com.vaadin.flow.component.ComponentEventListener;
+import com.vaadin.flow.component.ComponentUtil;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.UI;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * {@link ColorPickerMetrics} recorded to a Micrometer MeterRegistry. The
+ * Micrometer dependency is optional, and needs to be added to the
+ * application in order to use this class.
+ * <p>
+ * Recorded meters:
+ * <ul>
+ * <li>colorpicker.value.set: timer of server side setValue calls</li>
+ * <li>colorpicker.validation.failures: counter of values rejected by the
+ * validator or by setValue</li>
+ * <li>colorpicker.sanitize: counter of sanitized HTML captions, tagged with
+ * cache hit or miss</li>
+ * <li>colorpicker.presets.size: summary of presets payload in bytes</li>
+ * <li>colorpicker.presets.serialization: timer of presets
+ * serialization</li>
+ * <li>colorpicker.client.color.changed: counter of color changes received
+ * from the browser</li>
+ * <li>colorpicker.client.color.changed.per.ui: summary of color changes per
+ * UI, recorded when the UI is detached</li>
+ * </ul>
+ *
+ * <pre>
+ * ColorPicker.setMetrics(new MicrometerColorPickerMetrics(registry));
+ * </pre>
+ */
+public class MicrometerColorPickerMetrics implements ColorPickerMetrics {
+
+    private final Timer valueSet;
+    private final Counter validationFailures;
+    private final Counter sanitizeHits;
+    private final Counter sanitizeMisses;
+    private final DistributionSummary presetsSize;
+    private final Timer presetsSerialization;
+    private final Counter clientColorChanged;
+    private final DistributionSummary clientColorChangedPerUi;
+
+    /**
+     * Create metrics and register the meters.
+     *
+     * @param registry
+     *            The MeterRegistry, not null.
+     */
+    public MicrometerColorPickerMetrics(MeterRegistry registry) {
+        Objects.requireNonNull(registry, "registry can't be null");
+        valueSet = Timer.builder("colorpicker.value.set")
+                .description("Server side setValue calls").register(registry);
+        validationFailures = Counter
+                .builder("colorpicker.validation.failures")
+                .description("Values rejected by validator or setValue")
+                .register(registry);
+        sanitizeHits = Counter.builder("colorpicker.sanitize")
+                .description("Sanitized HTML captions").tag("cache", "hit")
+                .register(registry);
+        sanitizeMisses = Counter.builder("colorpicker.sanitize")
+                .description("Sanitized HTML captions").tag("cache", "miss")
+                .register(registry);
+        presetsSize = DistributionSummary.builder("colorpicker.presets.size")
+                .description("Size of presets sent to the browser")
+                .baseUnit("bytes").register(registry);
+        presetsSerialization = Timer
+                .builder("colorpicker.presets.serialization")
+                .description("Serialization of presets").register(registry);
+        clientColorChanged = Counter
+                .builder("colorpicker.client.color.changed")
+                .description("Color changes received from the browser")
+                .register(registry);
+        clientColorChangedPerUi = DistributionSummary
+                .builder("colorpicker.client.color.changed.per.ui")
+                .description("Color changes received from the browser per UI")
+                .register(registry);
+    }
+
+    @Override
+    public void valueSet(long nanos) {
+        valueSet.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void validationFailed() {
+        validationFailures.increment();
+    }
+
+    @Override
+    public void sanitized(boolean cacheHit) {
+        (cacheHit ? sanitizeHits : sanitizeMisses).increment();
+    }
+
+    @Override
+    public void presetsSet(int count, int bytes, long nanos) {
+        presetsSize.record(bytes);
+        presetsSerialization.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void clientColorChanged(UI ui) {
+        clientColorChanged.increment();
+        // Called with the session locked, so no further synchronization
+        UiCounter counter = ComponentUtil.getData(ui, UiCounter.class);
+        if (counter == null) {
+            counter = new UiCounter(clientColorChangedPerUi);
+            ComponentUtil.setData(ui, UiCounter.class, counter);
+            ui.addDetachListener(counter);
+        }
+        counter.count++;
+    }
+
+    /**
+     * Counts color changes of a UI and records the count when the UI is
+     * detached.
+     */
+    private static class UiCounter
+            implements ComponentEventListener<DetachEvent> {
+        // Meters are not serializable, count is not recorded after the
+        // session has been deserialized
+        private final transient DistributionSummary summary;
+        private int count;
+
+        private UiCounter(DistributionSummary summary) {
+            this.summary = summary;
+        }
+
+        @Override
+        public void onComponentEvent(DetachEvent event) {
+            if (summary != null) {
+                summary.record(count);
+            }
+        }
+    }
+}
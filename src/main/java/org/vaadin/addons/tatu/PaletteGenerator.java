@@ -0,0 +1,254 @@
+package org.vaadin.addons.tatu;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.vaadin.addons.tatu.ColorPicker.ColorPreset;
+
+/**
+ * Generates color presets from seed colors: tonal scales, color harmonies and
+ * Material style tone palettes. Colors are generated in OKLCH, so the steps
+ * are perceptually even, and chroma is reduced where needed to keep colors
+ * inside the sRGB gamut.
+ * <p>
+ * Generated colors are cached by seed and options in a bounded cache shared
+ * by the application, so palettes can be generated per request. A palette is
+ * generated only once while it is in the cache. Each call returns new
+ * ColorPreset instances, which can be modified freely.
+ *
+ * @see ColorPicker#setPresets(List)
+ */
+public final class PaletteGenerator {
+
+    /**
+     * Color harmonies, defined by hue rotations of the seed in degrees.
+     */
+    public enum Harmony {
+        COMPLEMENTARY(180), SPLIT_COMPLEMENTARY(150, 210), ANALOGOUS(-30,
+                30), TRIADIC(120, 240), TETRADIC(90, 180, 270);
+
+        private final int[] rotations;
+
+        Harmony(int... rotations) {
+            this.rotations = rotations;
+        }
+    }
+
+    /**
+     * Tones of the Material style palette, which are CIE L* values, 0 being
+     * black and 100 white.
+     */
+    private static final int[] MATERIAL_TONES = { 0, 10, 20, 30, 40, 50, 60,
+            70, 80, 90, 95, 99, 100 };
+
+    // Lightness range of tonal scales
+    private static final double LIGHTEST = 0.97;
+    private static final double DARKEST = 0.25;
+
+    private static final int CACHE_SIZE = 256;
+    private static final int GAMUT_STEPS = 12;
+    private static final int TONE_STEPS = 16;
+
+    private static final Map<String, Palette> CACHE = new LinkedHashMap<>(16,
+            0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(
+                Map.Entry<String, Palette> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private PaletteGenerator() {
+    }
+
+    /**
+     * Generate a tonal scale of the seed, from light to dark with the hue of
+     * the seed. The captions are the hex values of the colors.
+     *
+     * @param seed
+     *            The seed color, not null.
+     * @param steps
+     *            Number of colors, at least 2.
+     * @return List of ColorPreset.
+     */
+    public static List<ColorPreset> tonalScale(Color seed, int steps) {
+        Objects.requireNonNull(seed, "seed can't be null");
+        if (steps < 2) {
+            throw new IllegalArgumentException("steps must be at least 2");
+        }
+        return getPalette("scale", seed, steps, () -> {
+            float[] lch = toOklch(seed);
+            int[] colors = new int[steps];
+            for (int i = 0; i < steps; i++) {
+                double l = LIGHTEST - (LIGHTEST - DARKEST) * i / (steps - 1);
+                colors[i] = toRgb(l, lch[1], lch[2]);
+            }
+            return new Palette(colors, null);
+        }).toPresets();
+    }
+
+    /**
+     * Generate tonal scales of several seeds, one after another.
+     *
+     * @see #tonalScale(Color, int)
+     *
+     * @param seeds
+     *            List of seed colors, not null.
+     * @param steps
+     *            Number of colors per seed, at least 2.
+     * @return List of ColorPreset.
+     */
+    public static List<ColorPreset> tonalScales(List<Color> seeds,
+            int steps) {
+        Objects.requireNonNull(seeds, "seeds can't be null");
+        List<ColorPreset> presets = new ArrayList<>(seeds.size() * steps);
+        for (Color seed : seeds) {
+            presets.addAll(tonalScale(seed, steps));
+        }
+        return presets;
+    }
+
+    /**
+     * Generate a color harmony of the seed. The seed is the first color,
+     * followed by the colors with the hue rotated, keeping the lightness and
+     * chroma of the seed. The captions are the hex values of the colors.
+     *
+     * @param seed
+     *            The seed color, not null.
+     * @param harmony
+     *            The harmony, not null.
+     * @return List of ColorPreset.
+     */
+    public static List<ColorPreset> harmony(Color seed, Harmony harmony) {
+        Objects.requireNonNull(seed, "seed can't be null");
+        Objects.requireNonNull(harmony, "harmony can't be null");
+        return getPalette(harmony.name(), seed, 0, () -> {
+            float[] lch = toOklch(seed);
+            int[] colors = new int[harmony.rotations.length + 1];
+            colors[0] = seed.getRGB();
+            for (int i = 0; i < harmony.rotations.length; i++) {
+                colors[i + 1] = toRgb(lch[0], lch[1],
+                        lch[2] + harmony.rotations[i]);
+            }
+            return new Palette(colors, null);
+        }).toPresets();
+    }
+
+    /**
+     * Generate a Material style tone palette of the seed, with tones 0, 10,
+     * 20 ... 90, 95, 99 and 100. As in Material design, the tone is the CIE
+     * L* lightness of the color. The hue and chroma of the seed are kept in
+     * OKLCH, reducing chroma where needed to stay in gamut. The captions are
+     * of the form "Tone 40".
+     *
+     * @param seed
+     *            The seed color, not null.
+     * @return List of ColorPreset.
+     */
+    public static List<ColorPreset> materialTones(Color seed) {
+        Objects.requireNonNull(seed, "seed can't be null");
+        return getPalette("material", seed, 0, () -> {
+            float[] lch = toOklch(seed);
+            int[] colors = new int[MATERIAL_TONES.length];
+            String[] captions = new String[MATERIAL_TONES.length];
+            for (int i = 0; i < MATERIAL_TONES.length; i++) {
+                colors[i] = toToneRgb(MATERIAL_TONES[i], lch[1], lch[2]);
+                captions[i] = "Tone " + MATERIAL_TONES[i];
+            }
+            return new Palette(colors, captions);
+        }).toPresets();
+    }
+
+    private static float[] toOklch(Color seed) {
+        float[] lch = new float[3];
+        ColorConversions.rgbToOklch(seed.getRGB(), lch, 0);
+        return lch;
+    }
+
+    private static int toRgb(double l, double chroma, double hue) {
+        if (l <= 0) {
+            return 0x000000;
+        } else if (l >= 1) {
+            return 0xffffff;
+        } else if (ColorConversions.isOklchInGamut(l, chroma, hue)) {
+            return ColorConversions.oklchToRgb(l, chroma, hue);
+        }
+        // Reduce chroma until in gamut, keeping lightness and hue
+        double low = 0;
+        double high = chroma;
+        for (int i = 0; i < GAMUT_STEPS; i++) {
+            double middle = (low + high) / 2;
+            if (ColorConversions.isOklchInGamut(l, middle, hue)) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return ColorConversions.oklchToRgb(l, low, hue);
+    }
+
+    private static int toToneRgb(int tone, double chroma, double hue) {
+        if (tone <= 0) {
+            return 0x000000;
+        } else if (tone >= 100) {
+            return 0xffffff;
+        }
+        // L* is not linear in OKLCH lightness, so the OKLCH lightness giving
+        // the L* of the tone is searched
+        float[] lab = new float[3];
+        double low = 0;
+        double high = 1;
+        for (int i = 0; i < TONE_STEPS; i++) {
+            double middle = (low + high) / 2;
+            ColorConversions.rgbToLab(toRgb(middle, chroma, hue), lab, 0);
+            if (lab[0] < tone) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return toRgb((low + high) / 2, chroma, hue);
+    }
+
+    private static Palette getPalette(String type, Color seed, int steps,
+            PaletteFactory factory) {
+        String key = type + ':' + seed.getRGB() + ':' + steps;
+        // Palettes are small, so generating them with the lock held is
+        // cheaper than generating the same palette twice
+        synchronized (CACHE) {
+            return CACHE.computeIfAbsent(key, k -> factory.create());
+        }
+    }
+
+    @FunctionalInterface
+    private interface PaletteFactory {
+        Palette create();
+    }
+
+    /**
+     * Generated colors, never modified after creation.
+     */
+    private static class Palette {
+        private final String[] colors;
+        private final String[] captions;
+
+        private Palette(int[] colors, String[] captions) {
+            this.colors = new String[colors.length];
+            for (int i = 0; i < colors.length; i++) {
+                this.colors[i] = Color.of(colors[i]).toHex();
+            }
+            this.captions = captions == null ? this.colors : captions;
+        }
+
+        private List<ColorPreset> toPresets() {
+            List<ColorPreset> presets = new ArrayList<>(colors.length);
+            for (int i = 0; i < colors.length; i++) {
+                presets.add(new ColorPreset(colors[i], captions[i]));
+            }
+            return presets;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package org.vaadin.addons.tatu;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.vaadin.addons.tatu.ColorPicker.CaptionMode;
+import org.vaadin.addons.tatu.ColorPicker.ColorPreset;
+
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.server.RequestHandler;
+import com.vaadin.flow.server.VaadinRequest;
+import com.vaadin.flow.server.VaadinResponse;
+import com.vaadin.flow.server.VaadinSession;
+
+/**
+ * An immutable list of color presets that can be shared by many
+ * {@link ColorPicker} instances.
+ * <p>
+ * The JSON of the presets is built once. Pickers using the catalog refer to it
+ * by id, which is a hash of the content, and load the JSON from a URL derived
+ * from the id. As the URL is the same for all pickers, UIs and sessions and
+ * its content never changes, the browser downloads and caches the JSON only
+ * once regardless of the number of pickers using it.
+ * <p>
+ * Catalogs are created with {@link #of(List)}, which keeps one catalog in
+ * memory per content. Catalogs are serialized once per stream however many
+ * pickers use them, and a deserialized catalog is replaced with the catalog
+ * of the same id already in memory, so sessions restored from a cluster keep
+ * sharing the presets.
+ *
+ * @see ColorPicker#setPresetsCatalog(PresetCatalog)
+ */
+public final class PresetCatalog implements Serializable {
+
+    private static final String PATH = "colorpicker-presets/";
+
+    // Catalogs in memory by id, there is at most one catalog per id and
+    // entries are removed once the catalog is garbage collected
+    private static final Map<String, RegisteredCatalog> REGISTRY = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<PresetCatalog> RELEASED = new ReferenceQueue<>();
+
+    private final List<ColorPreset> presets;
+    private final String id;
+    private transient byte[] json;
+    private transient volatile PresetIndex index;
+
+    private PresetCatalog(List<ColorPreset> presets) {
+        this.presets = presets;
+        this.id = hash(getJson());
+    }
+
+    /**
+     * Get a catalog of the presets. The presets are copied as immutable
+     * shared presets, so later changes to them do not affect the catalog.
+     * Returns the same instance for the same presets as long as it is
+     * referenced.
+     *
+     * @see ColorPreset#of(String, String, CaptionMode)
+     *
+     * @param presets
+     *            List of ColorPreset, not null
+     * @return PresetCatalog
+     * @throws NullPointerException
+     *             when presets is null
+     */
+    public static PresetCatalog of(List<ColorPreset> presets) {
+        Objects.requireNonNull(presets, "presets can't be null");
+        List<ColorPreset> copy = new ArrayList<>(presets.size());
+        for (ColorPreset preset : presets) {
+            copy.add(ColorPreset.of(preset.getColor(), preset.getCaption(),
+                    preset.getCaptionMode()));
+        }
+        return register(
+                new PresetCatalog(Collections.unmodifiableList(copy)));
+    }
+
+    private static PresetCatalog register(PresetCatalog catalog) {
+        Reference<? extends PresetCatalog> released;
+        while ((released = RELEASED.poll()) != null) {
+            RegisteredCatalog reference = (RegisteredCatalog) released;
+            REGISTRY.remove(reference.id, reference);
+        }
+        while (true) {
+            RegisteredCatalog reference = REGISTRY.get(catalog.id);
+            PresetCatalog existing = reference == null ? null
+                    : reference.get();
+            if (existing != null) {
+                return existing;
+            }
+            RegisteredCatalog value = new RegisteredCatalog(catalog);
+            if (reference == null
+                    ? REGISTRY.putIfAbsent(catalog.id, value) == null
+                    : REGISTRY.replace(catalog.id, reference, value)) {
+                return catalog;
+            }
+        }
+    }
+
+    private Object readResolve() {
+        return register(this);
+    }
+
+    /**
+     * Get the id of the catalog, which is derived from its content.
+     *
+     * @return String value.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Get the presets of the catalog.
+     *
+     * @return Unmodifiable list of ColorPreset.
+     */
+    public List<ColorPreset> getPresets() {
+        return presets;
+    }
+
+    /**
+     * Get the search index of the presets, which is built on first use and
+     * then shared.
+     *
+     * @return PresetIndex
+     */
+    public PresetIndex getIndex() {
+        PresetIndex result = index;
+        if (result == null) {
+            synchronized (this) {
+                result = index;
+                if (result == null) {
+                    result = new PresetIndex(presets);
+                    index = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the presets as JSON encoded bytes in the compact format.
+     *
+     * @see PresetCodec
+     *
+     * @return The bytes, must not be modified.
+     */
+    byte[] getJson() {
+        byte[] result = json;
+        if (result == null) {
+            result = PresetCodec.encode(presets).toJson()
+                    .getBytes(StandardCharsets.UTF_8);
+            json = result;
+        }
+        return result;
+    }
+
+    /**
+     * Get the URL of the catalog for the given UI. The URL depends only on
+     * the id, and the catalog is served to the session of the UI from the
+     * first call on.
+     *
+     * @param ui
+     *            The UI, not null.
+     * @return URL as String.
+     */
+    String getUrl(UI ui) {
+        VaadinSession session = ui.getSession();
+        CatalogRequestHandler handler = session
+                .getAttribute(CatalogRequestHandler.class);
+        if (handler == null) {
+            handler = new CatalogRequestHandler();
+            session.setAttribute(CatalogRequestHandler.class, handler);
+            session.addRequestHandler(handler);
+        }
+        handler.ids.add(id);
+        return PATH + id + ".json";
+    }
+
+    /**
+     * Find a catalog in memory.
+     *
+     * @param id
+     *            Id of the catalog, not null.
+     * @return The catalog, or null if there is no catalog with the id.
+     */
+    static PresetCatalog find(String id) {
+        RegisteredCatalog reference = REGISTRY.get(id);
+        return reference == null ? null : reference.get();
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(bytes);
+            StringBuilder builder = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                builder.append(Character.forDigit((digest[i] >> 4) & 0xf, 16))
+                        .append(Character.forDigit(digest[i] & 0xf, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof PresetCatalog
+                && ((PresetCatalog) obj).id.equals(id);
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
+    private static final class RegisteredCatalog
+            extends WeakReference<PresetCatalog> {
+        private final String id;
+
+        private RegisteredCatalog(PresetCatalog catalog) {
+            super(catalog, RELEASED);
+            this.id = catalog.id;
+        }
+    }
+
+    /**
+     * Serves the catalogs used in a session. The content of a URL never
+     * changes, so it can be cached by the browser for as long as it likes.
+     */
+    private static class CatalogRequestHandler implements RequestHandler {
+        // Ids of catalogs used in the session, requests are handled without
+        // the session lock
+        private final Set<String> ids = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public boolean handleRequest(VaadinSession session,
+                VaadinRequest request, VaadinResponse response)
+                throws IOException {
+            String path = request.getPathInfo();
+            if (path == null || !path.startsWith("/" + PATH)
+                    || !path.endsWith(".json")) {
+                return false;
+            }
+            String id = path.substring(PATH.length() + 1,
+                    path.length() - ".json".length());
+            PresetCatalog catalog = ids.contains(id) ? find(id) : null;
+            if (catalog == null) {
+                response.sendError(404, "Catalog not found");
+                return true;
+            }
+            byte[] json = catalog.getJson();
+            response.setContentType("application/json");
+            response.setHeader("Cache-Control",
+                    "private, max-age=31536000, immutable");
+            response.setContentLength(json.length);
+            response.getOutputStream().write(json);
+            return true;
+        }
+    }
+}
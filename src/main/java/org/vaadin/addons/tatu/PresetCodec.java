@@ -0,0 +1,77 @@
+package org.vaadin.addons.tatu;
+
+import java.util.Base64;
+import java.util.List;
+
+import org.vaadin.addons.tatu.ColorPicker.CaptionMode;
+import org.vaadin.addons.tatu.ColorPicker.ColorPreset;
+
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
+
+/**
+ * Compact wire format of presets, decoded by preset-codec.ts. Instead of an
+ * object per preset, the presets are sent as columns:
+ * <ul>
+ * <li>colors: base64 of 3 bytes RGB per preset</li>
+ * <li>captions: array of captions</li>
+ * <li>html: base64 of a bitset with bit i set when preset i has HTML
+ * caption, lowest bit first</li>
+ * <li>texts: plain text captions of the HTML presets in order</li>
+ * <li>raw: colors that are not in lower case by preset index, so that
+ * colors are decoded exactly as they were set</li>
+ * </ul>
+ */
+final class PresetCodec {
+
+    /**
+     * Version of the format, increment on incompatible changes.
+     */
+    static final int VERSION = 1;
+
+    private PresetCodec() {
+    }
+
+    /**
+     * Encode presets in the compact format.
+     *
+     * @param presets
+     *            List of ColorPreset, not null.
+     * @return JsonObject
+     */
+    static JsonObject encode(List<ColorPreset> presets) {
+        int size = presets.size();
+        byte[] colors = new byte[size * 3];
+        byte[] html = new byte[(size + 7) / 8];
+        JsonArray captions = Json.createArray();
+        JsonArray texts = Json.createArray();
+        JsonObject raw = Json.createObject();
+        int i = 0;
+        for (ColorPreset preset : presets) {
+            int rgb = HexColor.parse(preset.getColor());
+            colors[i * 3] = (byte) (rgb >>> 16);
+            colors[i * 3 + 1] = (byte) (rgb >>> 8);
+            colors[i * 3 + 2] = (byte) rgb;
+            if (!preset.getColor().equals(HexColor.format(rgb))) {
+                raw.put(String.valueOf(i), preset.getColor());
+            }
+            captions.set(i, preset.getCaption());
+            if (preset.getCaptionMode() == CaptionMode.HTML) {
+                html[i >>> 3] |= (byte) (1 << (i & 7));
+                texts.set(texts.length(), preset.getTextCaption());
+            }
+            i++;
+        }
+        Base64.Encoder encoder = Base64.getEncoder();
+        JsonObject result = Json.createObject();
+        result.put("v", VERSION);
+        result.put("size", size);
+        result.put("colors", encoder.encodeToString(colors));
+        result.put("captions", captions);
+        result.put("html", encoder.encodeToString(html));
+        result.put("texts", texts);
+        result.put("raw", raw);
+        return result;
+    }
+}
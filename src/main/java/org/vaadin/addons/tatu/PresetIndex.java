@@ -0,0 +1,563 @@
+package org.vaadin.addons.tatu;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+import org.vaadin.addons.tatu.ColorPicker.ColorPreset;
+
+import com.vaadin.flow.data.provider.DataProvider;
+
+/**
+ * A search index of color presets for filtering large palettes.
+ * <p>
+ * The words of the captions, using the plain text of HTML captions, are kept
+ * in a sorted token table, which works as a flattened trie: all words
+ * starting with the filter are found with a binary search. With many filter
+ * words, the candidates of the most selective word are checked against the
+ * rest. The colors are kept sorted, so a hex prefix like #ab maps to a single
+ * range of colors. For finding the closest presets of a color, a k-d tree of
+ * the colors in OKLab is used. The index is immutable and can be shared by
+ * many pickers.
+ *
+ * @see ColorPicker#setPresetsIndex(PresetIndex)
+ */
+public final class PresetIndex implements Serializable {
+
+    private final ColorPreset[] presets;
+    private final String[] tokens;
+    private final int[][] postings;
+    private final int[][] presetTokens;
+    private final int[] sortedColors;
+    private final int[] colorOrder;
+    private final DataProvider<ColorPreset, String> dataProvider;
+
+    private transient volatile SearchResult lastResult;
+    private transient volatile ColorTree colorTree;
+
+    /**
+     * Create index of the presets.
+     *
+     * @param presets
+     *            Collection of ColorPreset, not null
+     * @throws NullPointerException
+     *             when presets is null
+     */
+    public PresetIndex(Collection<ColorPreset> presets) {
+        Objects.requireNonNull(presets, "presets can't be null");
+        this.presets = presets.toArray(new ColorPreset[0]);
+
+        Map<String, IntList> words = new HashMap<>();
+        long[] colors = new long[this.presets.length];
+        for (int i = 0; i < this.presets.length; i++) {
+            ColorPreset preset = this.presets[i];
+            for (String word : tokenize(preset.getTextCaption())) {
+                words.computeIfAbsent(word, key -> new IntList()).add(i);
+            }
+            // Color in high bits, position in low bits, sorts by color
+            colors[i] = (long) HexColor.parse(preset.getColor()) << 32 | i;
+        }
+        tokens = words.keySet().toArray(new String[0]);
+        Arrays.sort(tokens);
+        postings = new int[tokens.length][];
+        IntList[] tokensOfPresets = new IntList[this.presets.length];
+        for (int i = 0; i < tokens.length; i++) {
+            postings[i] = words.get(tokens[i]).toArray();
+            for (int position : postings[i]) {
+                if (tokensOfPresets[position] == null) {
+                    tokensOfPresets[position] = new IntList();
+                }
+                tokensOfPresets[position].add(i);
+            }
+        }
+        presetTokens = new int[this.presets.length][];
+        for (int i = 0; i < this.presets.length; i++) {
+            presetTokens[i] = tokensOfPresets[i] == null ? new int[0]
+                    : tokensOfPresets[i].toArray();
+        }
+        Arrays.sort(colors);
+        sortedColors = new int[colors.length];
+        colorOrder = new int[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            sortedColors[i] = (int) (colors[i] >>> 32);
+            colorOrder[i] = (int) colors[i];
+        }
+        dataProvider = DataProvider.fromFilteringCallbacks(query -> {
+            int[] matches = search(query.getFilter().orElse(null));
+            int from = Math.min(query.getOffset(), matches.length);
+            int to = Math.min(from + query.getLimit(), matches.length);
+            return IntStream.range(from, to)
+                    .mapToObj(i -> this.presets[matches[i]]);
+        }, query -> search(query.getFilter().orElse(null)).length);
+    }
+
+    /**
+     * Get the number of presets in the index.
+     *
+     * @return int value.
+     */
+    public int size() {
+        return presets.length;
+    }
+
+    /**
+     * Get the presets of the index.
+     *
+     * @return Unmodifiable list of ColorPreset.
+     */
+    public List<ColorPreset> getPresets() {
+        return Collections.unmodifiableList(Arrays.asList(presets));
+    }
+
+    /**
+     * Find presets matching the filter. Filter words are matched against the
+     * beginning of the words of the caption, all of them must match. Filter
+     * starting with # is matched against the beginning of the color instead.
+     * Matching is case insensitive.
+     *
+     * @param filter
+     *            The filter, null or empty matches all.
+     * @return List of matching ColorPreset in original order.
+     */
+    public List<ColorPreset> filter(String filter) {
+        int[] matches = search(filter);
+        List<ColorPreset> result = new ArrayList<>(matches.length);
+        for (int match : matches) {
+            result.add(presets[match]);
+        }
+        return result;
+    }
+
+    /**
+     * Get a data provider of the presets, which uses the index for
+     * filtering.
+     *
+     * @see #filter(String)
+     *
+     * @return DataProvider with String filter.
+     */
+    public DataProvider<ColorPreset, String> getDataProvider() {
+        return dataProvider;
+    }
+
+    /**
+     * Find the preset closest to the color. The distance is measured in
+     * OKLab, which approximates perceived color difference.
+     *
+     * @param color
+     *            The Color, not null.
+     * @return The closest ColorPreset, or null when the index is empty.
+     */
+    public ColorPreset nearest(Color color) {
+        List<ColorPreset> nearest = nearest(color, 1);
+        return nearest.isEmpty() ? null : nearest.get(0);
+    }
+
+    /**
+     * Find the presets closest to the color, closest first. The distance is
+     * measured in OKLab, which approximates perceived color difference. The
+     * lookup uses a k-d tree, which is built on first use.
+     *
+     * @param color
+     *            The Color, not null.
+     * @param k
+     *            Maximum number of presets to return.
+     * @return List of ColorPreset.
+     */
+    public List<ColorPreset> nearest(Color color, int k) {
+        Objects.requireNonNull(color, "color can't be null");
+        if (k < 0) {
+            throw new IllegalArgumentException("k can't be negative");
+        }
+        int[] positions = getColorTree().nearest(color.getRGB(),
+                Math.min(k, presets.length));
+        List<ColorPreset> result = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            result.add(presets[position]);
+        }
+        return result;
+    }
+
+    private ColorTree getColorTree() {
+        ColorTree tree = colorTree;
+        if (tree == null) {
+            synchronized (this) {
+                tree = colorTree;
+                if (tree == null) {
+                    tree = new ColorTree(presets);
+                    colorTree = tree;
+                }
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Find positions of the presets matching the filter.
+     *
+     * @param filter
+     *            The filter, can be null.
+     * @return Ascending positions of the matching presets.
+     */
+    int[] search(String filter) {
+        String normalized = filter == null ? ""
+                : filter.trim().toLowerCase(Locale.ROOT);
+        // Size and page queries of the data provider use the same filter
+        SearchResult result = lastResult;
+        if (result != null && result.filter.equals(normalized)) {
+            return result.matches;
+        }
+        int[] matches;
+        if (normalized.isEmpty()) {
+            matches = IntStream.range(0, presets.length).toArray();
+        } else if (normalized.charAt(0) == '#') {
+            matches = searchColors(normalized).stream().toArray();
+        } else {
+            matches = searchWords(normalized).stream().toArray();
+        }
+        lastResult = new SearchResult(normalized, matches);
+        return matches;
+    }
+
+    private BitSet searchWords(String filter) {
+        List<String> words = tokenize(filter);
+        int[] from = new int[words.size()];
+        int[] to = new int[words.size()];
+        int narrowest = -1;
+        long narrowestCount = Long.MAX_VALUE;
+        for (int w = 0; w < words.size(); w++) {
+            String word = words.get(w);
+            from[w] = lowerBound(word);
+            to[w] = from[w];
+            long count = 0;
+            while (to[w] < tokens.length && tokens[to[w]].startsWith(word)) {
+                count += postings[to[w]].length;
+                to[w]++;
+            }
+            if (count < narrowestCount) {
+                narrowest = w;
+                narrowestCount = count;
+            }
+        }
+        BitSet found = new BitSet(presets.length);
+        if (narrowest < 0) {
+            return found;
+        }
+        // Collect candidates of the most selective word and check the rest
+        // of the words against the words of each candidate
+        for (int t = from[narrowest]; t < to[narrowest]; t++) {
+            for (int position : postings[t]) {
+                found.set(position);
+            }
+        }
+        for (int w = 0; w < words.size(); w++) {
+            if (w == narrowest) {
+                continue;
+            }
+            for (int position = found.nextSetBit(0); position >= 0; position = found
+                    .nextSetBit(position + 1)) {
+                if (!containsToken(position, from[w], to[w])) {
+                    found.clear(position);
+                }
+            }
+        }
+        return found;
+    }
+
+    private boolean containsToken(int position, int from, int to) {
+        for (int token : presetTokens[position]) {
+            if (token >= from && token < to) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private BitSet searchColors(String filter) {
+        BitSet found = new BitSet(presets.length);
+        int digits = filter.length() - 1;
+        if (digits == 0) {
+            found.set(0, presets.length);
+            return found;
+        } else if (digits > 6) {
+            return found;
+        }
+        int prefix = 0;
+        for (int i = 1; i <= digits; i++) {
+            int digit = HexColor.digit(filter.charAt(i));
+            if (digit < 0) {
+                return found;
+            }
+            prefix = prefix << 4 | digit;
+        }
+        int shift = 4 * (6 - digits);
+        int from = prefix << shift;
+        int to = (prefix + 1) << shift;
+        int i = lowerBound(sortedColors, from);
+        while (i < sortedColors.length && sortedColors[i] < to) {
+            found.set(colorOrder[i]);
+            i++;
+        }
+        return found;
+    }
+
+    private int lowerBound(String word) {
+        int low = 0;
+        int high = tokens.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (tokens[mid].compareTo(word) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int lowerBound(int[] values, int value) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length()
+                    && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * A k-d tree of the preset colors in OKLab. The tree is stored implicitly
+     * in arrays: the node of a range is at its middle, and the halves on both
+     * sides are its subtrees.
+     */
+    private static final class ColorTree {
+        private final float[] points;
+        private final int[] positions;
+
+        private ColorTree(ColorPreset[] presets) {
+            int size = presets.length;
+            float[] lab = new float[size * 3];
+            positions = new int[size];
+            for (int i = 0; i < size; i++) {
+                ColorConversions.rgbToOklab(
+                        HexColor.parse(presets[i].getColor()), lab, i * 3);
+                positions[i] = i;
+            }
+            build(lab, 0, size, 0);
+            points = new float[size * 3];
+            for (int i = 0; i < size; i++) {
+                System.arraycopy(lab, positions[i] * 3, points, i * 3, 3);
+            }
+        }
+
+        private void build(float[] lab, int from, int to, int depth) {
+            while (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                select(lab, from, to - 1, mid, depth % 3);
+                build(lab, from, mid, depth + 1);
+                from = mid + 1;
+                depth++;
+            }
+        }
+
+        // Partially sorts positions so that the k:th is at its sorted place
+        private void select(float[] lab, int left, int right, int k,
+                int axis) {
+            while (right > left) {
+                float pivot = lab[positions[(left + right) >>> 1] * 3 + axis];
+                int i = left;
+                int j = right;
+                while (i <= j) {
+                    while (lab[positions[i] * 3 + axis] < pivot) {
+                        i++;
+                    }
+                    while (lab[positions[j] * 3 + axis] > pivot) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        int swap = positions[i];
+                        positions[i] = positions[j];
+                        positions[j] = swap;
+                        i++;
+                        j--;
+                    }
+                }
+                if (k <= j) {
+                    right = j;
+                } else if (k >= i) {
+                    left = i;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private int[] nearest(int rgb, int k) {
+            float[] target = new float[3];
+            ColorConversions.rgbToOklab(rgb, target, 0);
+            Neighbors neighbors = new Neighbors(k);
+            if (k > 0) {
+                search(target, neighbors, 0, positions.length, 0);
+            }
+            return neighbors.sorted();
+        }
+
+        private void search(float[] target, Neighbors neighbors, int from,
+                int to, int depth) {
+            if (from >= to) {
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            int point = mid * 3;
+            float dl = target[0] - points[point];
+            float da = target[1] - points[point + 1];
+            float db = target[2] - points[point + 2];
+            neighbors.offer(positions[mid], dl * dl + da * da + db * db);
+
+            int axis = depth % 3;
+            float diff = target[axis] - points[point + axis];
+            if (diff < 0) {
+                search(target, neighbors, from, mid, depth + 1);
+                if (diff * diff < neighbors.bound()) {
+                    search(target, neighbors, mid + 1, to, depth + 1);
+                }
+            } else {
+                search(target, neighbors, mid + 1, to, depth + 1);
+                if (diff * diff < neighbors.bound()) {
+                    search(target, neighbors, from, mid, depth + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Bounded max heap of the closest positions found so far.
+     */
+    private static final class Neighbors {
+        private final int[] positions;
+        private final float[] distances;
+        private int size;
+
+        private Neighbors(int capacity) {
+            positions = new int[capacity];
+            distances = new float[capacity];
+        }
+
+        private float bound() {
+            return size < positions.length ? Float.POSITIVE_INFINITY
+                    : distances[0];
+        }
+
+        private void offer(int position, float distance) {
+            if (size < positions.length) {
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) / 2;
+                    if (distances[parent] >= distance) {
+                        break;
+                    }
+                    positions[i] = positions[parent];
+                    distances[i] = distances[parent];
+                    i = parent;
+                }
+                positions[i] = position;
+                distances[i] = distance;
+            } else if (distance < distances[0]) {
+                siftDown(position, distance, size);
+            }
+        }
+
+        private void siftDown(int position, float distance, int length) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= length) {
+                    break;
+                }
+                if (child + 1 < length
+                        && distances[child + 1] > distances[child]) {
+                    child++;
+                }
+                if (distances[child] <= distance) {
+                    break;
+                }
+                positions[i] = positions[child];
+                distances[i] = distances[child];
+                i = child;
+            }
+            positions[i] = position;
+            distances[i] = distance;
+        }
+
+        private int[] sorted() {
+            int[] result = new int[size];
+            // Heap sort, the largest is removed first
+            for (int length = size; length > 0; length--) {
+                result[length - 1] = positions[0];
+                siftDown(positions[length - 1], distances[length - 1],
+                        length - 1);
+            }
+            return result;
+        }
+    }
+
+    private static class SearchResult {
+        private final String filter;
+        private final int[] matches;
+
+        private SearchResult(String filter, int[] matches) {
+            this.filter = filter;
+            this.matches = matches;
+        }
+    }
+
+    private static class IntList {
+        private int[] values = new int[2];
+        private int size;
+
+        private void add(int value) {
+            // The same word may occur twice in a caption
+            if (size > 0 && values[size - 1] == value) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,417 @@
+// Parser for CSS color strings used by color-picker. Handles named colors,
+// hex, rgb(), hsl(), hwb(), lab(), lch(), oklab() and oklch() without
+// touching the DOM. Parsing is done with a hand-written scanner writing to
+// module level buffers, so a conversion does not create garbage.
+
+const NAMED_COLORS = new Map<string, number>([
+  ['aliceblue', 0xf0f8ff], ['antiquewhite', 0xfaebd7], ['aqua', 0x00ffff],
+  ['aquamarine', 0x7fffd4], ['azure', 0xf0ffff], ['beige', 0xf5f5dc],
+  ['bisque', 0xffe4c4], ['black', 0x000000], ['blanchedalmond', 0xffebcd],
+  ['blue', 0x0000ff], ['blueviolet', 0x8a2be2], ['brown', 0xa52a2a],
+  ['burlywood', 0xdeb887], ['cadetblue', 0x5f9ea0], ['chartreuse', 0x7fff00],
+  ['chocolate', 0xd2691e], ['coral', 0xff7f50], ['cornflowerblue', 0x6495ed],
+  ['cornsilk', 0xfff8dc], ['crimson', 0xdc143c], ['cyan', 0x00ffff],
+  ['darkblue', 0x00008b], ['darkcyan', 0x008b8b], ['darkgoldenrod', 0xb8860b],
+  ['darkgray', 0xa9a9a9], ['darkgreen', 0x006400], ['darkgrey', 0xa9a9a9],
+  ['darkkhaki', 0xbdb76b], ['darkmagenta', 0x8b008b],
+  ['darkolivegreen', 0x556b2f], ['darkorange', 0xff8c00],
+  ['darkorchid', 0x9932cc], ['darkred', 0x8b0000], ['darksalmon', 0xe9967a],
+  ['darkseagreen', 0x8fbc8f], ['darkslateblue', 0x483d8b],
+  ['darkslategray', 0x2f4f4f], ['darkslategrey', 0x2f4f4f],
+  ['darkturquoise', 0x00ced1], ['darkviolet', 0x9400d3],
+  ['deeppink', 0xff1493], ['deepskyblue', 0x00bfff], ['dimgray', 0x696969],
+  ['dimgrey', 0x696969], ['dodgerblue', 0x1e90ff], ['firebrick', 0xb22222],
+  ['floralwhite', 0xfffaf0], ['forestgreen', 0x228b22], ['fuchsia', 0xff00ff],
+  ['gainsboro', 0xdcdcdc], ['ghostwhite', 0xf8f8ff], ['gold', 0xffd700],
+  ['goldenrod', 0xdaa520], ['gray', 0x808080], ['green', 0x008000],
+  ['greenyellow', 0xadff2f], ['grey', 0x808080], ['honeydew', 0xf0fff0],
+  ['hotpink', 0xff69b4], ['indianred', 0xcd5c5c], ['indigo', 0x4b0082],
+  ['ivory', 0xfffff0], ['khaki', 0xf0e68c], ['lavender', 0xe6e6fa],
+  ['lavenderblush', 0xfff0f5], ['lawngreen', 0x7cfc00],
+  ['lemonchiffon', 0xfffacd], ['lightblue', 0xadd8e6], ['lightcoral', 0xf08080],
+  ['lightcyan', 0xe0ffff], ['lightgoldenrodyellow', 0xfafad2],
+  ['lightgray', 0xd3d3d3], ['lightgreen', 0x90ee90], ['lightgrey', 0xd3d3d3],
+  ['lightpink', 0xffb6c1], ['lightsalmon', 0xffa07a],
+  ['lightseagreen', 0x20b2aa], ['lightskyblue', 0x87cefa],
+  ['lightslategray', 0x778899], ['lightslategrey', 0x778899],
+  ['lightsteelblue', 0xb0c4de], ['lightyellow', 0xffffe0], ['lime', 0x00ff00],
+  ['limegreen', 0x32cd32], ['linen', 0xfaf0e6], ['magenta', 0xff00ff],
+  ['maroon', 0x800000], ['mediumaquamarine', 0x66cdaa],
+  ['mediumblue', 0x0000cd], ['mediumorchid', 0xba55d3],
+  ['mediumpurple', 0x9370db], ['mediumseagreen', 0x3cb371],
+  ['mediumslateblue', 0x7b68ee], ['mediumspringgreen', 0x00fa9a],
+  ['mediumturquoise', 0x48d1cc], ['mediumvioletred', 0xc71585],
+  ['midnightblue', 0x191970], ['mintcream', 0xf5fffa], ['mistyrose', 0xffe4e1],
+  ['moccasin', 0xffe4b5], ['navajowhite', 0xffdead], ['navy', 0x000080],
+  ['oldlace', 0xfdf5e6], ['olive', 0x808000], ['olivedrab', 0x6b8e23],
+  ['orange', 0xffa500], ['orangered', 0xff4500], ['orchid', 0xda70d6],
+  ['palegoldenrod', 0xeee8aa], ['palegreen', 0x98fb98],
+  ['paleturquoise', 0xafeeee], ['palevioletred', 0xdb7093],
+  ['papayawhip', 0xffefd5], ['peachpuff', 0xffdab9], ['peru', 0xcd853f],
+  ['pink', 0xffc0cb], ['plum', 0xdda0dd], ['powderblue', 0xb0e0e6],
+  ['purple', 0x800080], ['rebeccapurple', 0x663399], ['red', 0xff0000],
+  ['rosybrown', 0xbc8f8f], ['royalblue', 0x4169e1], ['saddlebrown', 0x8b4513],
+  ['salmon', 0xfa8072], ['sandybrown', 0xf4a460], ['seagreen', 0x2e8b57],
+  ['seashell', 0xfff5ee], ['sienna', 0xa0522d], ['silver', 0xc0c0c0],
+  ['skyblue', 0x87ceeb], ['slateblue', 0x6a5acd], ['slategray', 0x708090],
+  ['slategrey', 0x708090], ['snow', 0xfffafa], ['springgreen', 0x00ff7f],
+  ['steelblue', 0x4682b4], ['tan', 0xd2b48c], ['teal', 0x008080],
+  ['thistle', 0xd8bfd8], ['tomato', 0xff6347], ['turquoise', 0x40e0d0],
+  ['violet', 0xee82ee], ['wheat', 0xf5deb3], ['white', 0xffffff],
+  ['whitesmoke', 0xf5f5f5], ['yellow', 0xffff00], ['yellowgreen', 0x9acd32]
+]);
+
+const UNIT_NONE = 0;
+const UNIT_PERCENT = 1;
+const UNIT_DEG = 2;
+const UNIT_RAD = 3;
+const UNIT_GRAD = 4;
+const UNIT_TURN = 5;
+
+// Scanner state and parsed function arguments, reused between calls
+let src = '';
+let pos = 0;
+const values = new Float64Array(4);
+const units = new Uint8Array(4);
+let count = 0;
+let hasAlpha = false;
+const rgb = new Float64Array(3);
+
+function isSpace(c : number) : boolean {
+  return c === 32 || c === 9 || c === 10 || c === 13 || c === 12;
+}
+
+function skipSpaces() {
+  while (pos < src.length && isSpace(src.charCodeAt(pos))) {
+    pos++;
+  }
+}
+
+function hexDigit(c : number) : number {
+  if (c >= 48 && c <= 57) return c - 48;
+  if (c >= 97 && c <= 102) return c - 87;
+  if (c >= 65 && c <= 70) return c - 55;
+  return -1;
+}
+
+function matchWord(word : string) : boolean {
+  // Case insensitive match of a lower case word at the position
+  if (pos + word.length > src.length) {
+    return false;
+  }
+  for (let i = 0; i < word.length; i++) {
+    if ((src.charCodeAt(pos + i) | 32) !== word.charCodeAt(i)) {
+      return false;
+    }
+  }
+  pos += word.length;
+  return true;
+}
+
+function readDigits() : number {
+  const start = pos;
+  while (pos < src.length) {
+    const c = src.charCodeAt(pos);
+    if (c < 48 || c > 57) break;
+    pos++;
+  }
+  return pos - start;
+}
+
+function readNumber(index : number) : boolean {
+  // Reads a number with optional unit to the argument at the index
+  if (matchWord('none')) {
+    values[index] = 0;
+    units[index] = UNIT_NONE;
+    return true;
+  }
+  let sign = 1;
+  const first = src.charCodeAt(pos);
+  if (first === 43 || first === 45) {
+    sign = first === 45 ? -1 : 1;
+    pos++;
+  }
+  let value = 0;
+  let digits = 0;
+  while (pos < src.length) {
+    const c = src.charCodeAt(pos);
+    if (c < 48 || c > 57) break;
+    value = value * 10 + (c - 48);
+    digits++;
+    pos++;
+  }
+  if (src.charCodeAt(pos) === 46) {
+    pos++;
+    let scale = 0.1;
+    while (pos < src.length) {
+      const c = src.charCodeAt(pos);
+      if (c < 48 || c > 57) break;
+      value += (c - 48) * scale;
+      scale /= 10;
+      digits++;
+      pos++;
+    }
+  }
+  if (digits === 0) {
+    return false;
+  }
+  const e = src.charCodeAt(pos) | 32;
+  const next = src.charCodeAt(pos + 1);
+  if (e === 101 && (next === 43 || next === 45 || (next >= 48 && next <= 57))) {
+    pos++;
+    let expSign = 1;
+    if (next === 43 || next === 45) {
+      expSign = next === 45 ? -1 : 1;
+      pos++;
+    }
+    const start = pos;
+    let exp = 0;
+    if (readDigits() === 0) {
+      return false;
+    }
+    for (let i = start; i < pos; i++) {
+      exp = exp * 10 + (src.charCodeAt(i) - 48);
+    }
+    value *= Math.pow(10, expSign * exp);
+  }
+  values[index] = sign * value;
+  if (src.charCodeAt(pos) === 37) {
+    pos++;
+    units[index] = UNIT_PERCENT;
+  } else if (matchWord('deg')) {
+    units[index] = UNIT_DEG;
+  } else if (matchWord('grad')) {
+    units[index] = UNIT_GRAD;
+  } else if (matchWord('rad')) {
+    units[index] = UNIT_RAD;
+  } else if (matchWord('turn')) {
+    units[index] = UNIT_TURN;
+  } else {
+    units[index] = UNIT_NONE;
+  }
+  return true;
+}
+
+function readArguments() : boolean {
+  // Reads "(a b c / d)" or legacy "(a, b, c, d)", the parenthesis must
+  // follow the function name without whitespace
+  if (src.charCodeAt(pos) !== 40) return false;
+  pos++;
+  count = 0;
+  hasAlpha = false;
+  let commas = false;
+  while (true) {
+    skipSpaces();
+    if (src.charCodeAt(pos) === 41) {
+      pos++;
+      break;
+    }
+    if (count > 0) {
+      const c = src.charCodeAt(pos);
+      if (c === 44) {
+        if (count === 1) commas = true;
+        else if (!commas) return false;
+        pos++;
+        skipSpaces();
+        if (count === 3) hasAlpha = true;
+      } else if (c === 47) {
+        if (commas || count !== 3) return false;
+        pos++;
+        skipSpaces();
+        hasAlpha = true;
+      } else if (commas) {
+        return false;
+      }
+    }
+    if (count === 4 || !readNumber(count)) return false;
+    count++;
+  }
+  skipSpaces();
+  return pos === src.length && (count === 3 || (count === 4 && hasAlpha));
+}
+
+function hue(index : number) : number {
+  const value = values[index];
+  switch (units[index]) {
+    case UNIT_RAD: return value * 180 / Math.PI;
+    case UNIT_GRAD: return value * 0.9;
+    case UNIT_TURN: return value * 360;
+    case UNIT_PERCENT: return NaN;
+    default: return value;
+  }
+}
+
+function alpha() : number {
+  if (!hasAlpha) return 1;
+  return units[3] === UNIT_PERCENT ? values[3] / 100 : values[3];
+}
+
+// Channel given as percentage or as number with the given 100% reference
+function channel(index : number, reference : number) : number {
+  return units[index] === UNIT_PERCENT ? values[index] * reference / 100 : values[index];
+}
+
+function hslToRgb(h : number, s : number, l : number) {
+  // s and l in range 0-1, result to rgb in range 0-1
+  h = ((h % 360) + 360) % 360;
+  const a = s * Math.min(l, 1 - l);
+  for (let i = 0; i < 3; i++) {
+    const n = i === 0 ? 0 : i === 1 ? 8 : 4;
+    const k = (n + h / 30) % 12;
+    rgb[i] = l - a * Math.max(-1, Math.min(k - 3, 9 - k, 1));
+  }
+}
+
+function gamma(linear : number) : number {
+  const abs = Math.abs(linear);
+  const value = abs <= 0.0031308 ? 12.92 * abs : 1.055 * Math.pow(abs, 1 / 2.4) - 0.055;
+  return linear < 0 ? -value : value;
+}
+
+function linearToRgb(r : number, g : number, b : number) {
+  rgb[0] = gamma(r);
+  rgb[1] = gamma(g);
+  rgb[2] = gamma(b);
+}
+
+function labToRgb(l : number, a : number, b : number) {
+  // CIE Lab (D50) to XYZ, adapted to D65, to linear sRGB
+  const kappa = 24389 / 27;
+  const epsilon = 216 / 24389;
+  const fy = (l + 16) / 116;
+  const fx = fy + a / 500;
+  const fz = fy - b / 200;
+  const x = (fx * fx * fx > epsilon ? fx * fx * fx : (116 * fx - 16) / kappa) * 0.3457 / 0.3585;
+  const y = l > kappa * epsilon ? fy * fy * fy : l / kappa;
+  const z = (fz * fz * fz > epsilon ? fz * fz * fz : (116 * fz - 16) / kappa) * (1 - 0.3457 - 0.3585) / 0.3585;
+  const x65 = 0.9554734527042182 * x - 0.023098536874261423 * y + 0.0632593086610217 * z;
+  const y65 = -0.028369706963208136 * x + 1.0099954580106629 * y + 0.021041398966943008 * z;
+  const z65 = 0.012314001688319899 * x - 0.020507696433477912 * y + 1.3303659366080753 * z;
+  linearToRgb(
+    3.2409699419045226 * x65 - 1.537383177570094 * y65 - 0.4986107602930034 * z65,
+    -0.9692436362808796 * x65 + 1.8759675015077202 * y65 + 0.04155505740717559 * z65,
+    0.05563007969699366 * x65 - 0.20397695888897652 * y65 + 1.0569715142428786 * z65);
+}
+
+function oklabToRgb(l : number, a : number, b : number) {
+  const l_ = l + 0.3963377774 * a + 0.2158037573 * b;
+  const m_ = l - 0.1055613458 * a - 0.0638541728 * b;
+  const s_ = l - 0.0894841775 * a - 1.2914855480 * b;
+  const lc = l_ * l_ * l_;
+  const mc = m_ * m_ * m_;
+  const sc = s_ * s_ * s_;
+  linearToRgb(
+    4.0767416621 * lc - 3.3077115913 * mc + 0.2309699292 * sc,
+    -1.2684380046 * lc + 2.6097574011 * mc - 0.3413193965 * sc,
+    -0.0041960863 * lc - 0.7034186147 * mc + 1.7076147010 * sc);
+}
+
+function parseHex(out : Uint8ClampedArray) : boolean {
+  const length = src.length - 1;
+  if (length !== 3 && length !== 4 && length !== 6 && length !== 8) {
+    return false;
+  }
+  const short = length < 6;
+  for (let i = 0; i < 4; i++) {
+    if (i * (short ? 1 : 2) >= length) {
+      out[i] = 255;
+      continue;
+    }
+    let value;
+    if (short) {
+      const d = hexDigit(src.charCodeAt(1 + i));
+      value = d * 17;
+    } else {
+      const high = hexDigit(src.charCodeAt(1 + i * 2));
+      const low = hexDigit(src.charCodeAt(2 + i * 2));
+      value = high < 0 || low < 0 ? -1 : high * 16 + low;
+    }
+    if (value < 0) {
+      return false;
+    }
+    out[i] = value;
+  }
+  return true;
+}
+
+function parseFunction(out : Uint8ClampedArray) : boolean {
+  let a = 1;
+  if (matchWord('rgba') || matchWord('rgb')) {
+    if (!readArguments()) return false;
+    rgb[0] = channel(0, 255) / 255;
+    rgb[1] = channel(1, 255) / 255;
+    rgb[2] = channel(2, 255) / 255;
+  } else if (matchWord('hsla') || matchWord('hsl')) {
+    if (!readArguments()) return false;
+    hslToRgb(hue(0), values[1] / 100, values[2] / 100);
+  } else if (matchWord('hwb')) {
+    if (!readArguments()) return false;
+    const white = values[1] / 100;
+    const black = values[2] / 100;
+    if (white + black >= 1) {
+      const gray = white / (white + black);
+      rgb[0] = rgb[1] = rgb[2] = gray;
+    } else {
+      hslToRgb(hue(0), 1, 0.5);
+      for (let i = 0; i < 3; i++) {
+        rgb[i] = rgb[i] * (1 - white - black) + white;
+      }
+    }
+  } else if (matchWord('oklab')) {
+    if (!readArguments()) return false;
+    oklabToRgb(channel(0, 1), channel(1, 0.4), channel(2, 0.4));
+  } else if (matchWord('oklch')) {
+    if (!readArguments()) return false;
+    const c = channel(1, 0.4);
+    const h = hue(2) * Math.PI / 180;
+    oklabToRgb(channel(0, 1), c * Math.cos(h), c * Math.sin(h));
+  } else if (matchWord('lab')) {
+    if (!readArguments()) return false;
+    labToRgb(channel(0, 100), channel(1, 125), channel(2, 125));
+  } else if (matchWord('lch')) {
+    if (!readArguments()) return false;
+    const c = channel(1, 150);
+    const h = hue(2) * Math.PI / 180;
+    labToRgb(channel(0, 100), c * Math.cos(h), c * Math.sin(h));
+  } else {
+    return false;
+  }
+  a = alpha();
+  if (Number.isNaN(rgb[0] + rgb[1] + rgb[2] + a)) {
+    return false;
+  }
+  out[0] = rgb[0] * 255;
+  out[1] = rgb[1] * 255;
+  out[2] = rgb[2] * 255;
+  out[3] = a * 255;
+  return true;
+}
+
+/**
+ * Parses CSS color to sRGB bytes [r, g, b, a] written to out. Out of gamut
+ * colors are clipped. Returns false when the syntax is not supported by this
+ * parser, in which case the caller may fall back to the browser.
+ */
+export function parseColor(color : string, out : Uint8ClampedArray) : boolean {
+  src = color.trim();
+  pos = 0;
+  if (src.charCodeAt(0) === 35) {
+    return parseHex(out);
+  }
+  if (src.charCodeAt(src.length - 1) === 41) {
+    return parseFunction(out);
+  }
+  if (matchWord('transparent') && pos === src.length) {
+    out[0] = out[1] = out[2] = out[3] = 0;
+    return true;
+  }
+  const named = NAMED_COLORS.get(src.length > 20 ? '' : src.toLowerCase());
+  if (named === undefined) {
+    return false;
+  }
+  out[0] = named >> 16;
+  out[1] = (named >> 8) & 0xff;
+  out[2] = named & 0xff;
+  out[3] = 255;
+  return true;
+}
@@ -1,12 +1,17 @@
-import { css, html, LitElement } from 'lit';
+import { css, html, LitElement, PropertyValues } from 'lit';
 import { ThemableMixin } from '@vaadin/vaadin-themable-mixin/vaadin-themable-mixin.js';
-import { customElement, property, query } from 'lit/decorators.js';
+import { customElement, property, query, state } from 'lit/decorators.js';
 import { ifDefined } from "lit-html/directives/if-defined.js";
 import '@vaadin/combo-box';
 import { comboBoxRenderer, ComboBoxLitRenderer } from '@vaadin/combo-box/lit.js';
-import { ComboBoxChangeEvent, ComboBoxCustomValueSetEvent, ComboBox } from '@vaadin/combo-box/vaadin-combo-box.js';
+import { ComboBoxChangeEvent, ComboBoxCustomValueSetEvent, ComboBox, ComboBoxDataProvider } from '@vaadin/combo-box/vaadin-combo-box.js';
 import '@vaadin/custom-field';
 import { TooltipController } from '@vaadin/component-base/src/tooltip-controller.js';
+import { parseColor } from './color-parser';
+import { htmlCaption } from './html-caption';
+import { decodePresets, EncodedPresets, isEncodedPresets } from './preset-codec';
+import './swatch-grid';
+import { SwatchGrid, SwatchPageFetcher, SwatchPreset } from './swatch-grid';
 
 // Type that corresponds to ColorPreset type in ColorPicker.java
 interface Preset {
@@ -16,6 +21,31 @@ interface Preset {
   captionMode: string;
 }
 
+// Preset catalogs shared by all pickers on the page, keyed by content hash
+const catalogs = new Map<string, Promise<Preset[]>>();
+
+// Items with plain text captions derived from presets, cached per preset
+// object so that presets are processed only when they change
+const derivedPresets = new WeakMap<Preset, Preset>();
+let domParser : DOMParser | undefined;
+
+// Delay before timings are sent to the server, so that the first
+// interactions with the picker are included
+const CLIENT_TIMING_DELAY = 10000;
+
+// Timings of all pickers with clientTiming set on the page. They are sent
+// once per page load by the picker that recorded the first of them, after
+// which nothing is measured anymore.
+let pageTimings : Record<string, { count : number, total : number, max : number }> = {};
+let timingSender : ColorPicker | undefined;
+let timingTimer : ReturnType<typeof setTimeout> | undefined;
+let timingsSent = false;
+
+// Buffer for color conversions, shared by all pickers
+const rgba = new Uint8ClampedArray(4);
+// Canvas for colors the parser does not support, created on first use
+let fallbackContext : OffscreenCanvasRenderingContext2D | CanvasRenderingContext2D | null | undefined;
+
 @customElement('color-picker')
 export class ColorPicker extends ThemableMixin(LitElement) {
   @property()
@@ -25,6 +55,14 @@ export class ColorPicker extends ThemableMixin(LitElement) {
   @property()
   presets : Preset[] = [];
   @property()
+  compactPresets : EncodedPresets | undefined = undefined;
+  @property()
+  catalog : string | undefined = undefined;
+  @property()
+  catalogUrl : string | undefined = undefined;
+  @property()
+  lazy : boolean | undefined = undefined;
+  @property()
   helperText = null;
   @property()
   errorMessage = null;
@@ -32,6 +70,12 @@ export class ColorPicker extends ThemableMixin(LitElement) {
   nocssinput : boolean | undefined = undefined;
   @property()
   noclear : boolean | undefined = undefined;
+  @property()
+  valueChangeMode = 'on_change';
+  @property()
+  valueChangeTimeout = 400;
+  @property()
+  clientTiming : boolean | undefined = undefined;
 
   @property({reflect: true})
   invalid : boolean | undefined = undefined;
@@ -50,9 +94,21 @@ export class ColorPicker extends ThemableMixin(LitElement) {
   _comboBox! : ComboBox<Preset>;
   @query("#coloropicker")
   _colorPicker! : HTMLInputElement;
+  @query("#swatchgrid")
+  _swatchGrid : SwatchGrid | undefined;
+
+  // Swatch grid of the swatch-grid variant, rendered when first opened
+  @state()
+  _gridOpened = false;
+  _gridCreated = false;
 
   _tooltipController : TooltipController | undefined;
-  _updated = false;
+  _items : Preset[] = [];
+  _syncTimer : ReturnType<typeof setTimeout> | undefined;
+  _syncedColor : string | null = null;
+  // Elements whose style shows the current color, see bindPreview
+  _previews : { target : HTMLElement, property : string }[] = [];
+  _openMeasured = false;
 
   // This is needed just for ThemableMixin
   static get is() {
@@ -127,10 +183,44 @@ export class ColorPicker extends ThemableMixin(LitElement) {
         #wrapper {
 	      display: flex;
 	      align-items: end;
+	      position: relative;
         }
         #combobox {
           flex-grow: 1;
         }
+        #swatchtoggle {
+          height: var(--lumo-text-field-size);
+          margin: 0 0 4px 4px;
+          padding: 0 var(--lumo-space-s);
+          border: none;
+          border-radius: var(--lumo-border-radius-m);
+          background: var(--lumo-contrast-5pct);
+          color: var(--lumo-secondary-text-color);
+          font-size: var(--lumo-icon-size-s);
+          cursor: pointer;
+          flex-shrink: 0;
+        }
+        #swatchtoggle:focus-visible {
+          box-shadow: 0 0 0 2px var(--lumo-primary-color-50pct);
+          outline: unset;
+        }
+        #swatchtoggle[disabled] {
+          pointer-events: none;
+          color: var(--lumo-disabled-text-color);
+        }
+        #swatchgrid {
+          position: absolute;
+          top: 100%;
+          right: 0;
+          z-index: 200;
+          padding: var(--lumo-space-xs);
+          background: var(--lumo-base-color);
+          border-radius: var(--lumo-border-radius-m);
+          box-shadow: var(--lumo-box-shadow-m);
+        }
+        #swatchgrid[hidden] {
+          display: none;
+        }
     `;
   }
 
@@ -140,16 +230,166 @@ export class ColorPicker extends ThemableMixin(LitElement) {
     this._tooltipController.setShouldShow((target) => !(target as ColorPicker)._comboBox.opened);
   }
 
-  updated() {
+  protected update(changed : PropertyValues) {
+    const start = performance.now();
+    super.update(changed);
+    this._measure('render', start);
+  }
+
+  willUpdate(changed : PropertyValues) {
+    // Selected color needs the presets to show its caption
+    if (this.compactPresets && (this.color || this._comboBox?.opened)) {
+      this._decodePresets();
+    }
+    if (changed.has('presets')) {
+      this._items = this._stripHtml(this.presets);
+    }
+    // Combo box does not allow items and data provider to be set at the
+    // same time, so the one not used is cleared before rendering the other
+    if (changed.has('lazy') && this._comboBox) {
+      if (this.lazy) {
+        this._comboBox.items = undefined;
+      } else {
+        this._comboBox.dataProvider = undefined;
+      }
+    }
+  }
+
+  updated(changed : PropertyValues) {
     if (this.color) {
       this.removeAttribute('invalid');
     }
+    if (changed.has('catalog') || changed.has('catalogUrl')) {
+      this._loadCatalog();
+    }
+    if (changed.has('color')) {
+      this._updatePreviews();
+    }
+  }
+
+  bindPreview(target : HTMLElement | null, property : string) {
+    // Called by the server, target is null if it is not attached
+    if (!target) {
+      return;
+    }
+    this.unbindPreview(target, property);
+    this._previews.push({ target, property });
+    this._updatePreview(target, property);
+  }
+
+  unbindPreview(target : HTMLElement | null, property : string) {
+    this._previews = this._previews.filter(preview =>
+      preview.target !== target || preview.property !== property);
+  }
+
+  protected _updatePreviews() {
+    for (const preview of this._previews) {
+      this._updatePreview(preview.target, preview.property);
+    }
+  }
+
+  protected _updatePreview(target : HTMLElement, property : string) {
+    if (this.color) {
+      target.style.setProperty(property, this.color);
+    } else {
+      target.style.removeProperty(property);
+    }
+  }
+
+  protected _decodePresets() {
+    // Compact presets are decoded when first needed, see willUpdate,
+    // _handleFocus and _handleOpened
+    if (this.compactPresets) {
+      const start = performance.now();
+      const encoded = this.compactPresets;
+      this.compactPresets = undefined;
+      this.presets = decodePresets(encoded);
+      this._measure('decode-presets', start);
+    }
+  }
+
+  protected _handleOpened(e : CustomEvent) {
+    if (e.detail.value) {
+      const start = performance.now();
+      this._decodePresets();
+      if (!this._openMeasured) {
+        // Measured until the frame showing the overlay has been rendered
+        this._openMeasured = true;
+        requestAnimationFrame(() => setTimeout(
+          () => this._measure('first-open', start)));
+      }
+    }
+  }
+
+  protected _measure(name : string, start : number) {
+    // Measured only until the timings are sent, so that performance
+    // entries do not pile up
+    if (!this.clientTiming || timingsSent) {
+      return;
+    }
+    const end = performance.now();
+    performance.measure('color-picker:' + name, { start, end });
+    const duration = end - start;
+    const timing = pageTimings[name];
+    if (timing) {
+      timing.count++;
+      timing.total += duration;
+      timing.max = Math.max(timing.max, duration);
+    } else {
+      pageTimings[name] = { count: 1, total: duration, max: duration };
+    }
+    if (!timingSender) {
+      timingSender = this;
+      timingTimer = setTimeout(() => this._sendTimings(),
+        CLIENT_TIMING_DELAY);
+    }
+  }
+
+  protected _sendTimings() {
+    clearTimeout(timingTimer);
+    timingTimer = undefined;
+    timingSender = undefined;
+    if (timingsSent) {
+      return;
+    }
+    timingsSent = true;
+    const nav = navigator as any;
+    this.dispatchEvent(new CustomEvent('client-timing', {
+      detail: {
+        timings: pageTimings,
+        hardwareConcurrency: nav.hardwareConcurrency || 0,
+        deviceMemory: nav.deviceMemory || 0
+      }
+    }));
+    pageTimings = {};
+  }
+
+  protected _loadCatalog() {
+    const id = this.catalog;
+    const url = this.catalogUrl;
+    if (!id || !url) {
+      return;
+    }
+    let catalog = catalogs.get(id);
+    if (!catalog) {
+      catalog = fetch(url).then(response => {
+        if (!response.ok) {
+          throw new Error('Failed to load presets ' + id);
+        }
+        return response.json();
+      }).then(json => isEncodedPresets(json) ? decodePresets(json) : json);
+      catalog.catch(() => catalogs.delete(id));
+      catalogs.set(id, catalog);
+    }
+    catalog.then(presets => {
+      if (this.catalog === id) {
+        this.presets = presets;
+      }
+    }, error => console.warn(error));
   }
 
   _isColor(strColor: string) : boolean {
-    const s = new Option().style;
-    s.color = strColor;
-    return s.color !== '';
+    return parseColor(strColor, rgba) || CSS.supports('color', strColor);
   }
 
   focus() {
@@ -163,24 +403,33 @@ export class ColorPicker extends ThemableMixin(LitElement) {
 
   protected _colorToRGBA(color : string) : Uint8ClampedArray {
     // Returns the color as an array of [r, g, b, a] -- all range from 0 - 255
-    // color must be a valid canvas fillStyle. This will cover most anything
-    // you'd want to use.
+    // Common CSS color formats are parsed directly, other valid CSS colors
+    // are resolved with a single reused canvas. The returned array is
+    // reused by subsequent calls.
     // Examples:
     // colorToRGBA('red')  # [255, 0, 0, 255]
     // colorToRGBA('#f00') # [255, 0, 0, 255]
-    const cvs = document.createElement('canvas');
-    cvs.height = 1;
-    cvs.width = 1;
-    const ctx = cvs.getContext('2d');
-    if (ctx) {
-       ctx.fillStyle = color;
-       ctx.fillRect(0, 0, 1, 1);
-       return ctx.getImageData(0, 0, 1, 1).data;
+    if (parseColor(color, rgba)) {
+      return rgba;
+    }
+    if (fallbackContext === undefined) {
+      const canvas = typeof OffscreenCanvas !== 'undefined'
+        ? new OffscreenCanvas(1, 1) : document.createElement('canvas');
+      canvas.width = 1;
+      canvas.height = 1;
+      fallbackContext = canvas.getContext('2d', { willReadFrequently: true }) as
+        OffscreenCanvasRenderingContext2D | CanvasRenderingContext2D | null;
+    }
+    if (fallbackContext) {
+      fallbackContext.clearRect(0, 0, 1, 1);
+      fallbackContext.fillStyle = '#000';
+      fallbackContext.fillStyle = color;
+      fallbackContext.fillRect(0, 0, 1, 1);
+      rgba.set(fallbackContext.getImageData(0, 0, 1, 1).data);
     } else {
-	   var empty : Uint8ClampedArray;
-       empty = new Uint8ClampedArray();
-	   return empty;
+      rgba.fill(0);
     }
+    return rgba;
   }
 
   protected _byteToHex(num : number) : string {
@@ -193,16 +442,75 @@ export class ColorPicker extends ThemableMixin(LitElement) {
     // Examples:
     // colorToHex('red')            # '#ff0000'
     // colorToHex('rgb(255, 0, 0)') # '#ff0000'
-    var hex;
     const rgba = this._colorToRGBA(color);
-    hex = [0,1,2].map(
-        idx => { return this._byteToHex(rgba[idx]); }
-        ).join('');
-    return "#"+hex;
+    return '#' + this._byteToHex(rgba[0]) + this._byteToHex(rgba[1])
+      + this._byteToHex(rgba[2]);
+  }
+
+  disconnectedCallback() {
+    super.disconnectedCallback();
+    this._cancelSync();
+    this._closeGrid();
+    if (timingSender === this) {
+      this._sendTimings();
+    }
+    // The server binds the previews again when attached
+    this._previews = [];
+  }
+
+  protected _handleInput(e: any) {
+    // Color is being picked from native input, this is fired continuously
+    // while dragging, so syncing to the server is rate limited by the mode.
+    // Previews are updated right away without waiting for the render.
+    this.color = e.target.value;
+    this._updatePreviews();
+    this.dispatchEvent(new CustomEvent('color-input', {
+      detail: this.color,
+      composed: true,
+      bubbles: true
+    }));
+    switch (this.valueChangeMode) {
+      case 'eager':
+        this._emitColorChanged();
+        break;
+      case 'lazy':
+        // Sync when the input has been idle for the timeout
+        this._cancelSync();
+        this._syncTimer = setTimeout(() => {
+          this._syncTimer = undefined;
+          this._emitColorChanged();
+        }, this.valueChangeTimeout);
+        break;
+      case 'timeout':
+        // Sync at most once per timeout while the input keeps changing
+        if (this._syncTimer === undefined) {
+          this._emitColorChanged();
+          this._scheduleThrottledSync();
+        }
+        break;
+    }
+  }
+
+  protected _scheduleThrottledSync() {
+    this._syncTimer = setTimeout(() => {
+      this._syncTimer = undefined;
+      if (this.color !== this._syncedColor) {
+        this._emitColorChanged();
+        this._scheduleThrottledSync();
+      }
+    }, this.valueChangeTimeout);
+  }
+
+  protected _cancelSync() {
+    if (this._syncTimer !== undefined) {
+      clearTimeout(this._syncTimer);
+      this._syncTimer = undefined;
+    }
   }
 
   protected _handleChange(e: any) {
 	// Color was picked from native input
+	this._cancelSync();
 	this.color = e.target.value;
 	console.log("Color: "+this.color);
 	this._emitColorChanged();
@@ -232,6 +540,7 @@ export class ColorPicker extends ThemableMixin(LitElement) {
 	if (this.color) {
     	this.removeAttribute('invalid');
 	}
+	this._syncedColor = this.color;
 	const event = new CustomEvent('color-changed', {
 		detail: this.color,
         composed: true,
@@ -246,6 +555,7 @@ export class ColorPicker extends ThemableMixin(LitElement) {
 	// Conversion to hex is needed as native input does not allow
 	// other formats.
 	if (this.nocssinput) return;
+	const start = performance.now();
 	const cssColor = e.detail;
 	if (this._isColor(cssColor)) {
 		this.color = this._colorToHex(cssColor);
@@ -255,10 +565,12 @@ export class ColorPicker extends ThemableMixin(LitElement) {
 		this.color = null;
     	this._emitColorChanged();
 	}
+	this._measure('css-color-input', start);
   }
 
   protected _handleFocus(e : CustomEvent) {
 	e.stopPropagation();
+	this._decodePresets();
 	const event = new CustomEvent('focus', {
         composed: true,
         cancelable: true,
@@ -277,23 +589,68 @@ export class ColorPicker extends ThemableMixin(LitElement) {
 	this.dispatchEvent(event);		 
   }
 
-  _set_theme(theme : string) {
-    this.theme = theme;
+  clearPresetCache() {
+    this._comboBox?.clearCache();
+    this._swatchGrid?.clearCache();
   }
 
-  protected _updateCaptions() {
-    if (this._updated) {
+  protected _isSwatchGrid() : boolean {
+    return !!this.theme && this.theme.split(' ').includes('swatch-grid');
+  }
+
+  protected _toggleGrid() {
+    if (this._gridOpened) {
+      this._closeGrid();
       return;
     }
-	if (this._comboBox.opened) {
-      const captionElements = this._comboBox._scroller.getElementsByClassName('color-caption');
-      for (let i=0;i<captionElements.length;i++) {
-        if (captionElements[i].captionMode === "HTML") {
-          captionElements[i].children[0].innerHTML = captionElements[i].caption;
-        }
-      }
-      this._updated = true;
+    this._decodePresets();
+    this._gridCreated = true;
+    this._gridOpened = true;
+    document.addEventListener('pointerdown', this._handleOutsidePointer, true);
+    this.updateComplete.then(() => this._swatchGrid?.focus());
+  }
+
+  protected _closeGrid() {
+    this._gridOpened = false;
+    document.removeEventListener('pointerdown', this._handleOutsidePointer, true);
+  }
+
+  protected _handleOutsidePointer = (e : Event) => {
+    if (!e.composedPath().includes(this)) {
+      this._closeGrid();
     }
+  };
+
+  protected _handleGridCancel() {
+    this._closeGrid();
+    (this.renderRoot.querySelector('#swatchtoggle') as HTMLElement | null)?.focus();
+  }
+
+  protected _handleSwatch(e : CustomEvent<SwatchPreset>) {
+    this._cancelSync();
+    this.color = e.detail.color;
+    this._emitColorChanged();
+    this._handleGridCancel();
+  }
+
+  protected _swatchPageFetcher : SwatchPageFetcher = (page, pageSize) => {
+    // Same lazy preset source as the combo box, without a filter
+    return (this as any).$server.fetchPresets('', page, pageSize)
+      .then((result : { items : Preset[], size : number }) => (
+        { items: this._stripHtml(result.items), size: result.size }));
+  };
+
+  protected _presetDataProvider : ComboBoxDataProvider<Preset> = (params, callback) => {
+    // Presets are fetched from the server page by page using the filter
+    (this as any).$server.fetchPresets(params.filter, params.page, params.pageSize)
+      .then((result : { items : Preset[], size : number }) => {
+        callback(this._stripHtml(result.items), result.size);
+      })
+      .catch(() => callback([], 0));
+  };
+
+  _set_theme(theme : string) {
+    this.theme = theme;
   }
 
   render() {
@@ -324,6 +681,7 @@ export class ColorPicker extends ThemableMixin(LitElement) {
               theme="${ifDefined(this.theme)}"
               type="color" 
               .value="${this.color}"
+              @input=${this._handleInput}
               @change=${this._handleChange}
               @blur=${this._handleBlur}
               @focus=${this._handleFocus}
@@ -336,36 +694,79 @@ export class ColorPicker extends ThemableMixin(LitElement) {
               disabled=${ifDefined(this.disabled)}
               invalid=${ifDefined(this.invalid)}
               theme="${ifDefined(this.theme)}"
-              .items="${this._stripHtml(this.presets)}"
+              .items="${this.lazy ? undefined : this._items}"
+              .dataProvider="${this.lazy ? this._presetDataProvider : undefined}"
               .value="${this.noclear ? this.color : ''}"
               item-label-path="textCaption"
               @change=${this._handlePreset}
-              @opened-changed=${this._updateCaptions}
               @custom-value-set=${this._cssColorInput}
+              @opened-changed=${this._handleOpened}
               ${comboBoxRenderer(this.renderer, [])}
               @blur=${this._handleBlur}
               @focus=${this._handleFocus}
             ></vaadin-combo-box>
+            ${this._isSwatchGrid() ? this._renderSwatchGrid() : ''}
           </div>
         <slot name="tooltip"></slot>
     `;
   }
 
+  protected _renderSwatchGrid() {
+    return html`
+      <button
+        id="swatchtoggle"
+        part="swatch-toggle"
+        type="button"
+        aria-label="Show color swatches"
+        aria-haspopup="listbox"
+        aria-expanded="${this._gridOpened}"
+        ?disabled=${this.disabled || this.readonly}
+        @click=${this._toggleGrid}
+      >&#9638;</button>
+      ${this._gridCreated ? html`
+        <color-swatch-grid
+          id="swatchgrid"
+          part="swatch-grid"
+          ?hidden=${!this._gridOpened}
+          .items=${this.lazy ? undefined : this._items}
+          .fetchPage=${this.lazy ? this._swatchPageFetcher : undefined}
+          .value=${this.color}
+          @swatch-selected=${this._handleSwatch}
+          @swatch-cancel=${this._handleGridCancel}
+        ></color-swatch-grid>` : ''}
+    `;
+  }
+
   protected _stripHtml(presets : Preset[]) : Preset[] {
-    const stripped : Preset[] = [];
+    const start = performance.now();
+    const stripped : Preset[] = new Array(presets.length);
     for (let i=0;i<presets.length;i++) {
-      if (presets[i].captionMode === 'HTML') {
-        var doc = new DOMParser().parseFromString(presets[i].caption, 'text/html');
-        const text = doc.body.textContent ? doc.body.textContent : '';
-        presets[i].textCaption = text;
-      } else {
-        presets[i].textCaption = presets[i].caption; 
-	  }
-      stripped.push(presets[i]);
+      stripped[i] = this._toItem(presets[i]);
     }
+    this._measure('strip-html', start);
     return stripped;
   }
 
+  protected _toItem(preset : Preset) : Preset {
+    if (typeof preset.textCaption === 'string') {
+      // Plain text caption is computed by the server
+      return preset;
+    }
+    let item = derivedPresets.get(preset);
+    if (!item || item.color !== preset.color || item.caption !== preset.caption
+        || item.captionMode !== preset.captionMode) {
+      let text = preset.caption;
+      if (preset.captionMode === 'HTML') {
+        domParser = domParser || new DOMParser();
+        const doc = domParser.parseFromString(preset.caption, 'text/html');
+        text = doc.body.textContent ? doc.body.textContent : '';
+      }
+      item = { ...preset, textCaption: text };
+      derivedPresets.set(preset, item);
+    }
+    return item;
+  }
+
   private renderer: ComboBoxLitRenderer<Preset> = (preset) => {
     // Renders nicer looking color items with color badge and label in the dropdown
     return html`
@@ -375,10 +776,8 @@ export class ColorPicker extends ThemableMixin(LitElement) {
           style="width: 20px; height: 20px; background: ${preset.color}; margin-right: 10px; border: solid 1px var(--lumo-contrast-10pct); border-radius: var(--lumo-border-radius-s);"
         >          
         </div>
-        <div class="color-caption" .captionMode=${preset.captionMode} .caption=${preset.caption}>
-          <div>
-            ${preset.textCaption}
-          </div>
+        <div class="color-caption">
+          <div>${preset.captionMode === 'HTML' ? htmlCaption(preset.caption) : preset.textCaption}</div>
         </div>
       </div>
     `;
@@ -0,0 +1,42 @@
+import { noChange } from 'lit';
+import { Directive, directive, PartInfo, PartType } from 'lit/directive.js';
+
+// Templates of HTML captions, parsed once and shared by all pickers. The
+// captions are sanitized by the server before they are sent to the client.
+const templates = new Map<string, HTMLTemplateElement>();
+const MAX_TEMPLATES = 1000;
+
+class HtmlCaptionDirective extends Directive {
+  _caption : string | undefined;
+
+  constructor(partInfo : PartInfo) {
+    super(partInfo);
+    if (partInfo.type !== PartType.CHILD) {
+      throw new Error('htmlCaption can only be used in child expressions');
+    }
+  }
+
+  render(caption : string) {
+    // Rows of the dropdown are recycled, so the content is replaced only
+    // when the row gets a different caption
+    if (caption === this._caption) {
+      return noChange;
+    }
+    this._caption = caption;
+    let template = templates.get(caption);
+    if (!template) {
+      template = document.createElement('template');
+      template.innerHTML = caption;
+      if (templates.size >= MAX_TEMPLATES) {
+        templates.delete(templates.keys().next().value as string);
+      }
+      templates.set(caption, template);
+    }
+    return template.content.cloneNode(true);
+  }
+}
+
+/**
+ * Renders sanitized HTML caption by cloning a cached template.
+ */
+export const htmlCaption = directive(HtmlCaptionDirective);
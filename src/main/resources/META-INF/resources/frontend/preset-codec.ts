@@ -0,0 +1,52 @@
+// Decoder of the compact preset format produced by PresetCodec.java. Colors
+// are base64 encoded RGB bytes, captions an array, and the caption mode a
+// bitset, so a large preset list is a few strings instead of an object per
+// preset. Colors not in lower case are also sent as is in raw, so they are
+// decoded exactly as set on the server.
+
+export interface EncodedPresets {
+  v : number;
+  size : number;
+  colors : string;
+  captions : string[];
+  html : string;
+  texts : string[];
+  raw : { [index : string] : string };
+}
+
+// Decoded preset, same shape as Preset in color-picker.ts
+export interface DecodedPreset {
+  color : string;
+  caption : string;
+  textCaption : string;
+  captionMode : string;
+}
+
+const HEX_BYTES : string[] = [];
+for (let i = 0; i < 256; i++) {
+  HEX_BYTES.push((i < 16 ? '0' : '') + i.toString(16));
+}
+
+export function isEncodedPresets(value : unknown) : value is EncodedPresets {
+  return !!value && !Array.isArray(value) && (value as EncodedPresets).v === 1;
+}
+
+export function decodePresets(encoded : EncodedPresets) : DecodedPreset[] {
+  const colors = atob(encoded.colors);
+  const html = atob(encoded.html);
+  const presets : DecodedPreset[] = new Array(encoded.size);
+  let text = 0;
+  for (let i = 0; i < encoded.size; i++) {
+    const isHtml = (html.charCodeAt(i >> 3) & (1 << (i & 7))) !== 0;
+    const caption = encoded.captions[i];
+    presets[i] = {
+      color: encoded.raw[i] || '#' + HEX_BYTES[colors.charCodeAt(i * 3)]
+        + HEX_BYTES[colors.charCodeAt(i * 3 + 1)]
+        + HEX_BYTES[colors.charCodeAt(i * 3 + 2)],
+      caption,
+      textCaption: isHtml ? encoded.texts[text++] : caption,
+      captionMode: isHtml ? 'HTML' : 'TEXT'
+    };
+  }
+  return presets;
+}
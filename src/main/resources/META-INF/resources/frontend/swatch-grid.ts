@@ -0,0 +1,299 @@
+import { css, html, LitElement, PropertyValues } from 'lit';
+import { customElement, property, query, state } from 'lit/decorators.js';
+
+// Type that corresponds to ColorPreset type in ColorPicker.java
+export interface SwatchPreset {
+  color : string;
+  caption : string;
+  textCaption : string;
+  captionMode : string;
+}
+
+// Fetches a page of presets, used when the presets are loaded lazily
+export type SwatchPageFetcher = (page : number, pageSize : number)
+  => Promise<{ items : SwatchPreset[], size : number }>;
+
+const CELL = 28;
+const OVERSCAN_ROWS = 2;
+const PAGE_SIZE = 100;
+
+// Windowed grid of color swatches. Only the rows in view, plus a few rows
+// of overscan, are rendered. Cells are rendered by position in the window,
+// so Lit reuses their DOM while scrolling and only updates the colors.
+@customElement('color-swatch-grid')
+export class SwatchGrid extends LitElement {
+  @property({ attribute: false })
+  items : SwatchPreset[] | undefined = undefined;
+  @property({ attribute: false })
+  fetchPage : SwatchPageFetcher | undefined = undefined;
+  @property()
+  value : string | null = null;
+  @property({ type: Number })
+  columns = 10;
+  @property({ type: Number })
+  rows = 8;
+
+  @state()
+  _firstRow = 0;
+  @state()
+  _active = -1;
+  @state()
+  _size = 0;
+
+  @query('#scroller')
+  _scroller! : HTMLElement;
+
+  // Pages of lazily loaded presets, null while a page is being fetched
+  _pages = new Map<number, SwatchPreset[] | null>();
+  _scrollFrame = 0;
+
+  static get styles() {
+    return css`
+      :host {
+        display: block;
+        outline: none;
+      }
+      #scroller {
+        position: relative;
+        overflow-y: auto;
+        overscroll-behavior: contain;
+        outline: none;
+      }
+      #scroller:focus-visible {
+        box-shadow: 0 0 0 2px var(--lumo-primary-color-50pct);
+      }
+      .swatch {
+        position: absolute;
+        top: 0;
+        left: 0;
+        box-sizing: border-box;
+        width: 24px;
+        height: 24px;
+        margin: 2px;
+        border: solid 1px var(--lumo-contrast-10pct);
+        border-radius: var(--lumo-border-radius-s);
+        cursor: pointer;
+      }
+      .swatch[loading] {
+        background: var(--lumo-contrast-5pct);
+        cursor: default;
+      }
+      .swatch[selected] {
+        box-shadow: 0 0 0 2px var(--lumo-base-color), 0 0 0 4px var(--lumo-contrast-60pct);
+      }
+      .swatch[active] {
+        box-shadow: 0 0 0 2px var(--lumo-base-color), 0 0 0 4px var(--lumo-primary-color);
+      }
+    `;
+  }
+
+  protected willUpdate(changed : PropertyValues) {
+    if (changed.has('items') || changed.has('fetchPage')) {
+      this._pages.clear();
+      this._size = this.items ? this.items.length : 0;
+      if (!this.items && this.fetchPage) {
+        this._load(0);
+      }
+    }
+    if (changed.has('value') || changed.has('items')) {
+      const index = this._indexOf(this.value);
+      if (index >= 0) {
+        this._active = index;
+      }
+    }
+  }
+
+  protected updated(changed : PropertyValues) {
+    if (changed.has('_active')) {
+      this._scrollToActive();
+    }
+  }
+
+  clearCache() {
+    this._pages.clear();
+    if (!this.items && this.fetchPage) {
+      this._load(0);
+    }
+    this.requestUpdate();
+  }
+
+  focus() {
+    this._scroller?.focus();
+  }
+
+  protected _preset(index : number) : SwatchPreset | undefined {
+    if (this.items) {
+      return this.items[index];
+    }
+    const page = this._pages.get(Math.floor(index / PAGE_SIZE));
+    return page ? page[index % PAGE_SIZE] : undefined;
+  }
+
+  protected _indexOf(color : string | null) : number {
+    // Only loaded presets can be found, lazy pages may not be
+    if (!color) {
+      return -1;
+    }
+    const lower = color.toLowerCase();
+    if (this.items) {
+      return this.items.findIndex(preset => preset.color.toLowerCase() === lower);
+    }
+    for (const [page, presets] of this._pages) {
+      const index = presets ? presets.findIndex(preset => preset.color.toLowerCase() === lower) : -1;
+      if (index >= 0) {
+        return page * PAGE_SIZE + index;
+      }
+    }
+    return -1;
+  }
+
+  protected _load(page : number) {
+    if (!this.fetchPage || this._pages.has(page)) {
+      return;
+    }
+    const fetcher = this.fetchPage;
+    this._pages.set(page, null);
+    fetcher(page, PAGE_SIZE).then(result => {
+      if (fetcher !== this.fetchPage) {
+        return;
+      }
+      this._pages.set(page, result.items);
+      this._size = result.size;
+      this.requestUpdate();
+    }, () => this._pages.delete(page));
+  }
+
+  protected _handleScroll() {
+    // Window is moved at most once per frame
+    if (this._scrollFrame) {
+      return;
+    }
+    this._scrollFrame = requestAnimationFrame(() => {
+      this._scrollFrame = 0;
+      this._firstRow = Math.floor(this._scroller.scrollTop / CELL);
+    });
+  }
+
+  protected _scrollToActive() {
+    if (this._active < 0 || !this._scroller) {
+      return;
+    }
+    const top = Math.floor(this._active / this.columns) * CELL;
+    const scroller = this._scroller;
+    if (top < scroller.scrollTop) {
+      scroller.scrollTop = top;
+    } else if (top + CELL > scroller.scrollTop + scroller.clientHeight) {
+      scroller.scrollTop = top + CELL - scroller.clientHeight;
+    }
+  }
+
+  protected _handleKeyDown(e : KeyboardEvent) {
+    const last = this._size - 1;
+    const current = Math.max(this._active, 0);
+    let next = -1;
+    switch (e.key) {
+      case 'ArrowRight':
+        next = Math.min(current + 1, last);
+        break;
+      case 'ArrowLeft':
+        next = Math.max(current - 1, 0);
+        break;
+      case 'ArrowDown':
+        next = Math.min(current + this.columns, last);
+        break;
+      case 'ArrowUp':
+        next = current - this.columns >= 0 ? current - this.columns : current;
+        break;
+      case 'PageDown':
+        next = Math.min(current + this.columns * this.rows, last);
+        break;
+      case 'PageUp':
+        next = Math.max(current - this.columns * this.rows, 0);
+        break;
+      case 'Home':
+        next = 0;
+        break;
+      case 'End':
+        next = last;
+        break;
+      case 'Enter':
+      case ' ':
+        this._select(this._active);
+        break;
+      case 'Escape':
+        this.dispatchEvent(new CustomEvent('swatch-cancel'));
+        break;
+      default:
+        return;
+    }
+    e.preventDefault();
+    e.stopPropagation();
+    if (next >= 0) {
+      // First key press activates the first swatch
+      this._active = this._active < 0 ? 0 : next;
+    }
+  }
+
+  protected _handleClick(e : MouseEvent) {
+    const index = Number((e.target as HTMLElement).dataset.index);
+    if (!isNaN(index)) {
+      this._active = index;
+      this._select(index);
+    }
+  }
+
+  protected _select(index : number) {
+    const preset = this._preset(index);
+    if (preset) {
+      this.dispatchEvent(new CustomEvent('swatch-selected', { detail: preset }));
+    }
+  }
+
+  render() {
+    const totalRows = Math.ceil(this._size / this.columns);
+    const first = Math.max(this._firstRow - OVERSCAN_ROWS, 0);
+    const end = Math.min(this._firstRow + this.rows + OVERSCAN_ROWS, totalRows);
+    const cells = [];
+    for (let row = first; row < end; row++) {
+      for (let column = 0; column < this.columns; column++) {
+        const index = row * this.columns + column;
+        if (index >= this._size) {
+          break;
+        }
+        const preset = this._preset(index);
+        if (!preset) {
+          this._load(Math.floor(index / PAGE_SIZE));
+        }
+        cells.push(html`
+          <div
+            class="swatch"
+            part="swatch"
+            role="option"
+            id="swatch-${index}"
+            data-index="${index}"
+            title="${preset ? preset.textCaption : ''}"
+            aria-label="${preset ? preset.textCaption : ''}"
+            aria-selected="${this._active === index}"
+            ?loading=${!preset}
+            ?active=${this._active === index}
+            ?selected=${!!preset && !!this.value && preset.color.toLowerCase() === this.value.toLowerCase()}
+            style="transform: translate(${column * CELL}px, ${row * CELL}px); background: ${preset ? preset.color : ''};"
+          ></div>`);
+      }
+    }
+    return html`
+      <div
+        id="scroller"
+        role="listbox"
+        tabindex="0"
+        aria-activedescendant="${this._active >= 0 ? 'swatch-' + this._active : ''}"
+        style="width: ${this.columns * CELL}px; height: ${this.rows * CELL}px;"
+        @scroll=${this._handleScroll}
+        @keydown=${this._handleKeyDown}
+        @click=${this._handleClick}
+      >
+        <div style="height: ${totalRows * CELL}px;">${cells}</div>
+      </div>
+    `;
+  }
+}
@@ -0,0 +1,132 @@
+package org.vaadin.addons.tatu;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.vaadin.addons.tatu.ColorPicker.InputMode;
+
+public class ColorConversionsTest {
+
+    private static final int[] COLORS = { 0xff0000, 0x663399, 0x123456,
+            0xffffff, 0x000000, 0x808080 };
+
+    @Test
+    public void cssColor_parse() {
+        Assert.assertEquals(0xffff0000, CssColor.parse("red"));
+        Assert.assertEquals(0xff663399, CssColor.parse("RebeccaPurple"));
+        Assert.assertEquals(0xffff0000, CssColor.parse(" #F00 "));
+        Assert.assertEquals(0x80ff0000, CssColor.parse("#ff000080"));
+        Assert.assertEquals(0x800080ff,
+                CssColor.parse("rgba(0, 128, 255, 0.5)"));
+        Assert.assertEquals(0xffff8000, CssColor.parse("rgb(100% 50% 0%)"));
+        Assert.assertEquals(0xff008000,
+                CssColor.parse("hsl(120deg, 100%, 25%)"));
+        Assert.assertEquals(0xff808080, CssColor.parse("hwb(0 50% 50%)"));
+        Assert.assertEquals(0xffb23333, CssColor.parse("hwb(0 20% 30%)"));
+        Assert.assertEquals(0xffff0000,
+                CssColor.parse("lab(54.29 80.8 69.89)"));
+        Assert.assertEquals(0xffff0000,
+                CssColor.parse("lch(54.29 106.84 40.86)"));
+        Assert.assertEquals(0xffff0000,
+                CssColor.parse("oklab(0.628 0.2249 0.1258)"));
+        Assert.assertEquals(0x80ff0000,
+                CssColor.parse("oklch(62.8% 0.2577 29.23 / 50%)"));
+        Assert.assertEquals(0, CssColor.parse("transparent"));
+        try {
+            CssColor.parse("rgb (1 2 3)");
+            Assert.fail("Whitespace before parenthesis should throw");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void cssColor_isValid() {
+        Assert.assertTrue(CssColor.isValid("rgb(1e2 0 0)"));
+        Assert.assertFalse(CssColor.isValid(null));
+        Assert.assertFalse(CssColor.isValid("foo"));
+        Assert.assertFalse(CssColor.isValid("#12345"));
+        Assert.assertFalse(CssColor.isValid("rgb(1 2)"));
+        Assert.assertFalse(CssColor.isValid("rgb(1, 2 3)"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cssColor_parse_invalid() {
+        CssColor.parse("nocolor");
+    }
+
+    @Test
+    public void cssColor_format() {
+        Assert.assertEquals("rgb(255 0 0 / 0.502)",
+                CssColor.toRgb(0x80ff0000));
+        Assert.assertEquals("hsl(270 50% 40%)", CssColor.toHsl(0xff663399));
+        Assert.assertEquals("oklab(0.628 0.2249 0.1258)",
+                CssColor.toOklab(0xffff0000));
+        Assert.assertEquals("oklch(0.628 0.2577 29.23)",
+                CssColor.toOklch(0xffff0000));
+        Assert.assertEquals("#ff0000",
+                CssColor.toHex("oklch(0.628 0.2577 29.23)"));
+    }
+
+    @Test
+    public void conversions_roundTrip() {
+        float[] out = new float[4];
+        for (int rgb : COLORS) {
+            ColorConversions.rgbToHsl(rgb, out, 0);
+            Assert.assertEquals(rgb,
+                    ColorConversions.hslToRgb(out[0], out[1], out[2]));
+            ColorConversions.rgbToHsv(rgb, out, 0);
+            Assert.assertEquals(rgb,
+                    ColorConversions.hsvToRgb(out[0], out[1], out[2]));
+            ColorConversions.rgbToLab(rgb, out, 0);
+            Assert.assertEquals(rgb,
+                    ColorConversions.labToRgb(out[0], out[1], out[2]));
+            ColorConversions.rgbToOklch(rgb, out, 0);
+            Assert.assertEquals(rgb,
+                    ColorConversions.oklchToRgb(out[0], out[1], out[2]));
+            ColorConversions.rgbToCmyk(rgb, out, 0);
+            Assert.assertEquals(rgb, ColorConversions.cmykToRgb(out[0],
+                    out[1], out[2], out[3]));
+        }
+    }
+
+    @Test
+    public void conversions_bulk() {
+        float[] oklab = new float[COLORS.length * 3];
+        int[] colors = new int[COLORS.length];
+        ColorConversions.rgbToOklab(COLORS, oklab);
+        ColorConversions.oklabToRgb(oklab, colors);
+        Assert.assertArrayEquals(COLORS, colors);
+    }
+
+    @Test
+    public void conversions_bulk_aboveParallelThreshold() {
+        int size = ColorConversions.PARALLEL_THRESHOLD * 4 + 3;
+        int[] colors = new int[size];
+        for (int i = 0; i < size; i++) {
+            colors[i] = (i * 257) & 0xffffff;
+        }
+        float[] lab = new float[size * 3];
+        int[] result = new int[size];
+        ColorConversions.rgbToLab(colors, lab);
+        ColorConversions.labToRgb(lab, result);
+        Assert.assertArrayEquals(colors, result);
+        float[] expected = new float[3];
+        ColorConversions.rgbToLab(colors[size - 1], expected, 0);
+        Assert.assertEquals(expected[2], lab[size * 3 - 1], 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void conversions_bulk_tooShort() {
+        ColorConversions.rgbToCmyk(COLORS, new float[COLORS.length * 3]);
+    }
+
+    @Test
+    public void colorPicker_cssValue() {
+        ColorPicker colorPicker = new ColorPicker();
+        colorPicker.setInputMode(InputMode.CSSVALUE);
+        colorPicker.setValue("hsl(0 100% 50%)");
+        Assert.assertEquals("#ff0000", colorPicker.getValue());
+        Assert.assertEquals(Color.rgb(255, 0, 0),
+                Color.fromCss("rgb(255 0 0)"));
+    }
+}
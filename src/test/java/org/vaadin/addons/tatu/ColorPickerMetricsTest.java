@@ -0,0 +1,182 @@
+package org.vaadin.addons.tatu;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jsoup.safety.Safelist;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.vaadin.addons.tatu.ColorPicker.CaptionMode;
+import org.vaadin.addons.tatu.ColorPicker.ColorPreset;
+
+import elemental.json.JsonArray;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ColorPickerMetricsTest {
+
+    private final RecordingMetrics recorded = new RecordingMetrics();
+
+    @After
+    public void reset() {
+        ColorPicker.setMetrics(ColorPickerMetrics.NOOP);
+    }
+
+    @Test
+    public void defaultMetrics_isNoop() {
+        Assert.assertSame(ColorPickerMetrics.NOOP, ColorPicker.getMetrics());
+        Assert.assertFalse(ColorPickerMetrics.NOOP.isEnabled());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void setMetrics_null_throws() {
+        ColorPicker.setMetrics(null);
+    }
+
+    @Test
+    public void setValue_isTimed() {
+        ColorPicker.setMetrics(recorded);
+        ColorPicker colorPicker = new ColorPicker();
+        colorPicker.setValue("#ff0000");
+        colorPicker.setValue(null);
+        try {
+            colorPicker.setValue("red");
+            Assert.fail("Invalid value should throw");
+        } catch (IllegalArgumentException e) {
+            // expected, and still timed
+        }
+        Assert.assertEquals(3, recorded.valueSet);
+    }
+
+    @Test
+    public void validationFailure_isCounted() {
+        ColorPicker.setMetrics(recorded);
+        ColorPicker colorPicker = new ColorPicker();
+        colorPicker.getDefaultValidator().apply(null, null);
+        Assert.assertEquals(0, recorded.validationFailures);
+        colorPicker.setInvalid(true);
+        colorPicker.getDefaultValidator().apply(null, null);
+        Assert.assertEquals(1, recorded.validationFailures);
+    }
+
+    @Test
+    public void validationFailure_validatedTwice_isCountedOnce() {
+        ColorPicker.setMetrics(recorded);
+        ColorPicker colorPicker = new ColorPicker();
+        colorPicker.setInvalid(true);
+        colorPicker.getDefaultValidator().apply(null, null);
+        colorPicker.getDefaultValidator().apply(null, null);
+        Assert.assertEquals(1, recorded.validationFailures);
+
+        colorPicker.setInvalid(false);
+        colorPicker.getDefaultValidator().apply(null, null);
+        colorPicker.setInvalid(true);
+        colorPicker.getDefaultValidator().apply(null, null);
+        Assert.assertEquals(2, recorded.validationFailures);
+    }
+
+    @Test
+    public void setValue_unsupportedFormat_isCountedAsFailure() {
+        ColorPicker.setMetrics(recorded);
+        ColorPicker colorPicker = new ColorPicker();
+        colorPicker.setValue("#ff0000");
+        Assert.assertEquals(0, recorded.validationFailures);
+        try {
+            colorPicker.setValue("#ff00");
+            Assert.fail("Invalid value should throw");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        Assert.assertEquals(1, recorded.validationFailures);
+        Assert.assertEquals(2, recorded.valueSet);
+    }
+
+    @Test
+    public void sanitize_cacheHitsAreCounted() {
+        ColorPicker.setMetrics(recorded);
+        HtmlSanitizer sanitizer = new HtmlSanitizer(Safelist.basic());
+        sanitizer.sanitize("<b>Red</b>");
+        sanitizer.sanitize("<b>Red</b>");
+        sanitizer.toText("<b>Red</b>");
+        Assert.assertEquals(Arrays.asList(false, true), recorded.sanitized);
+    }
+
+    @Test
+    public void setPresets_sizeAndTimeAreRecorded() {
+        ColorPicker.setMetrics(recorded);
+        ColorPicker colorPicker = new ColorPicker();
+        List<ColorPreset> presets = Arrays.asList(
+                new ColorPreset("#00ff00", "Color 1"),
+                new ColorPreset("#ff0000", "Color 2"));
+        colorPicker.setPresets(presets);
+        Assert.assertEquals(2, recorded.presetCount);
+        int plainBytes = recorded.presetBytes;
+        JsonArray json = (JsonArray) colorPicker.getElement()
+                .getPropertyRaw("presets");
+        Assert.assertEquals(json.toJson().length(), plainBytes);
+
+        colorPicker.setCompactPresets(true);
+        Assert.assertEquals(2, recorded.presetCount);
+        Assert.assertTrue(recorded.presetBytes < plainBytes);
+    }
+
+    @Test
+    public void micrometer_metersAreRecorded() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ColorPicker.setMetrics(new MicrometerColorPickerMetrics(registry));
+        ColorPicker colorPicker = new ColorPicker();
+        colorPicker.setValue("#ff0000");
+        colorPicker.setPresets(Arrays.asList(
+                new ColorPreset("#00ff00", "<b>Metrics 1</b>",
+                        CaptionMode.HTML),
+                new ColorPreset("#ff0000", "<b>Metrics 1</b>",
+                        CaptionMode.HTML)));
+        colorPicker.setInvalid(true);
+        colorPicker.getDefaultValidator().apply(null, null);
+
+        Assert.assertEquals(1,
+                registry.get("colorpicker.value.set").timer().count());
+        Assert.assertEquals(1, registry.get("colorpicker.validation.failures")
+                .counter().count(), 0);
+        Assert.assertEquals(1, registry.get("colorpicker.sanitize")
+                .tag("cache", "miss").counter().count(), 0);
+        Assert.assertEquals(1, registry.get("colorpicker.sanitize")
+                .tag("cache", "hit").counter().count(), 0);
+        Assert.assertEquals(1, registry.get("colorpicker.presets.size")
+                .summary().count());
+        Assert.assertEquals(1, registry
+                .get("colorpicker.presets.serialization").timer().count());
+    }
+
+    private static class RecordingMetrics implements ColorPickerMetrics {
+        private int valueSet;
+        private int validationFailures;
+        private final List<Boolean> sanitized = new ArrayList<>();
+        private int presetCount;
+        private int presetBytes;
+
+        @Override
+        public void valueSet(long nanos) {
+            Assert.assertTrue(nanos >= 0);
+            valueSet++;
+        }
+
+        @Override
+        public void validationFailed() {
+            validationFailures++;
+        }
+
+        @Override
+        public void sanitized(boolean cacheHit) {
+            sanitized.add(cacheHit);
+        }
+
+        @Override
+        public void presetsSet(int count, int bytes, long nanos) {
+            Assert.assertTrue(nanos >= 0);
+            presetCount = count;
+            presetBytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.vaadin.addons.tatu;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openqa.selenium.JavascriptExecutor;
+import org.vaadin.addons.tatu.ColorPicker.CaptionMode;
+
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
+
+/**
+ * Measures client side costs of the color-picker with different numbers of
+ * presets: time to render the picker after adding it to the view, time to
+ * open the dropdown and time to apply a filter typed to the field. The times
+ * are measured in the browser, and the median of the repeats is written as
+ * JSON to target/performance/color-picker-performance.json to allow
+ * comparison against a baseline.
+ */
+public class ColorPickerPerformanceIT extends AbstractViewTest {
+
+    private static final int[] COUNTS = { 100, 1000, 10000 };
+    private static final int REPEATS = 5;
+    private static final Path RESULT = Paths.get("target", "performance",
+            "color-picker-performance.json");
+
+    // Clicks render and waits for the first render of the picker
+    private static final String RENDER = ""
+            + "const done = arguments[arguments.length - 1];"
+            + "const start = performance.now();"
+            + "const observer = new MutationObserver(() => {"
+            + "  const picker = document.getElementById('picker');"
+            + "  if (picker) {"
+            + "    observer.disconnect();"
+            + "    picker.updateComplete.then(() => requestAnimationFrame("
+            + "      () => done(performance.now() - start)));"
+            + "  }"
+            + "});"
+            + "observer.observe(document.body, { childList: true, subtree: true });"
+            + "document.getElementById('render').click();";
+
+    // Waits until the overlay shows items and nothing is loading
+    private static final String WAIT_FOR_ITEMS = ""
+            + "const waitForItems = (combo, start, done) => {"
+            + "  const check = () => {"
+            + "    const overlay = document.querySelector('vaadin-combo-box-overlay');"
+            + "    const items = overlay ? overlay.querySelectorAll('vaadin-combo-box-item').length"
+            + "      || overlay.shadowRoot.querySelectorAll('vaadin-combo-box-item').length : 0;"
+            + "    if (items > 0 && !combo.loading) {"
+            + "      requestAnimationFrame(() => done(performance.now() - start));"
+            + "    } else {"
+            + "      requestAnimationFrame(check);"
+            + "    }"
+            + "  };"
+            + "  requestAnimationFrame(check);"
+            + "};"
+            + "const combo = document.getElementById('picker').shadowRoot.getElementById('combobox');";
+
+    private static final String OPEN = ""
+            + "const done = arguments[arguments.length - 1];"
+            + WAIT_FOR_ITEMS
+            + "const start = performance.now();"
+            + "combo.opened = true;"
+            + "waitForItems(combo, start, done);";
+
+    private static final String FILTER = ""
+            + "const done = arguments[arguments.length - 1];"
+            + WAIT_FOR_ITEMS
+            + "const input = combo.inputElement || combo.querySelector('input');"
+            + "const start = performance.now();"
+            + "input.value = arguments[0];"
+            + "input.dispatchEvent(new Event('input', { bubbles: true }));"
+            + "waitForItems(combo, start, done);";
+
+    private static final String CLOSE = ""
+            + "const combo = document.getElementById('picker')"
+            + ".shadowRoot.getElementById('combobox');"
+            + "combo.opened = false;"
+            + "combo.filter = '';"
+            + "(combo.inputElement || combo.querySelector('input')).value = '';";
+
+    public ColorPickerPerformanceIT() {
+        super("performance");
+    }
+
+    @Test
+    public void measure() throws IOException {
+        // Rendering 10k presets in HTML mode may take long on slow machines
+        getDriver().manage().timeouts().scriptTimeout(Duration.ofSeconds(60));
+        JsonArray results = Json.createArray();
+        for (boolean lazy : new boolean[] { false, true }) {
+            for (CaptionMode mode : CaptionMode.values()) {
+                for (int count : COUNTS) {
+                    results.set(results.length(), measure(count, mode, lazy));
+                }
+            }
+        }
+        JsonObject report = Json.createObject();
+        report.put("repeats", REPEATS);
+        report.put("userAgent", (String) getCommandExecutor()
+                .executeScript("return navigator.userAgent;"));
+        report.put("results", results);
+
+        Files.createDirectories(RESULT.getParent());
+        Files.write(RESULT, report.toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private JsonObject measure(int count, CaptionMode mode, boolean lazy) {
+        double[] render = new double[REPEATS];
+        double[] open = new double[REPEATS];
+        double[] filter = new double[REPEATS];
+        for (int i = 0; i < REPEATS; i++) {
+            getDriver().get(getRootURL() + "/performance?count=" + count
+                    + "&mode=" + mode + "&lazy=" + lazy);
+            waitForDevServer();
+            render[i] = time(RENDER);
+            open[i] = time(OPEN);
+            filter[i] = time(FILTER, "Color " + (i + 1));
+            getCommandExecutor().executeScript(CLOSE);
+        }
+        JsonObject result = Json.createObject();
+        result.put("count", count);
+        result.put("mode", mode.name());
+        result.put("lazy", lazy);
+        result.put("renderMs", median(render));
+        result.put("openMs", median(open));
+        result.put("filterMs", median(filter));
+        return result;
+    }
+
+    private double time(String script, Object... arguments) {
+        Object result = ((JavascriptExecutor) getDriver())
+                .executeAsyncScript(script, arguments);
+        Assert.assertTrue("Script did not return a time",
+                result instanceof Number);
+        return ((Number) result).doubleValue();
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle]
+                : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+}
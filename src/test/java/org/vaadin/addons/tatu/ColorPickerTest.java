@@ -1,5 +1,6 @@
 package org.vaadin.addons.tatu;
 
+import com.vaadin.flow.component.ComponentUtil;
 import com.vaadin.flow.component.Focusable;
 import com.vaadin.flow.component.HasHelper;
 import com.vaadin.flow.component.HasLabel;
@@ -7,23 +8,38 @@ import com.vaadin.flow.component.HasSize;
 import com.vaadin.flow.component.HasTheme;
 import com.vaadin.flow.component.HasValidation;
 import com.vaadin.flow.component.HasValue;
+import com.vaadin.flow.component.html.Div;
 import com.vaadin.flow.component.shared.HasThemeVariant;
 import com.vaadin.flow.component.shared.HasTooltip;
 import com.vaadin.flow.data.binder.ValidationResult;
+import com.vaadin.flow.data.provider.DataProvider;
+import com.vaadin.flow.data.value.ValueChangeMode;
 import com.vaadin.flow.dom.ThemeList;
+import com.vaadin.flow.shared.Registration;
 
+import elemental.json.Json;
 import elemental.json.JsonArray;
 import elemental.json.JsonObject;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 
+import org.jsoup.safety.Safelist;
 import org.junit.Assert;
 import org.junit.Test;
 import org.vaadin.addons.tatu.ColorPicker.CaptionMode;
+import org.vaadin.addons.tatu.ColorPicker.ClientTimingEvent;
 import org.vaadin.addons.tatu.ColorPicker.ColorPreset;
 import org.vaadin.addons.tatu.ColorPicker.InputMode;
 
@@ -95,6 +111,12 @@ public class ColorPickerTest {
         ColorPreset preset = new ColorPreset(null, null);
     }
 
+    @Test(expected = NullPointerException.class)
+    public void colorPreset_setCaptionMode_null() {
+        ColorPreset preset = new ColorPreset("#ff0000", "Red");
+        preset.setCaptionMode(null);
+    }
+
     @Test
     public void addThemeVariant_themeNamesContainsThemeVariant() {
         ColorPicker colorPicker = new ColorPicker();
@@ -199,4 +221,480 @@ public class ColorPickerTest {
                 CaptionMode.HTML);
         Assert.assertEquals("<b><img>Color 3</b>", preset.getCaption());
     }
-}
\ No newline at end of file
+
+    @Test(expected = IllegalArgumentException.class)
+    public void colorPicker_setValue_notHexDigits() {
+        ColorPicker colorPicker = new ColorPicker();
+        colorPicker.setValue("#gggggg");
+    }
+
+    @Test
+    public void hexColor_isValid() {
+        Assert.assertTrue(HexColor.isValid("#00ff00"));
+        Assert.assertTrue(HexColor.isValid("#00FF00"));
+        Assert.assertFalse(HexColor.isValid(null));
+        Assert.assertFalse(HexColor.isValid("#00ff0"));
+        Assert.assertFalse(HexColor.isValid("#00ff000"));
+        Assert.assertFalse(HexColor.isValid("00ff000"));
+        Assert.assertFalse(HexColor.isValid("#00ffx0"));
+    }
+
+    @Test
+    public void hexColor_parse() {
+        Assert.assertEquals(0x00ff00, HexColor.parse("#00ff00"));
+        Assert.assertEquals(0xabcdef, HexColor.parse("#ABCDEF"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void hexColor_parse_wrongFormat() {
+        HexColor.parse("#12345z");
+    }
+
+    @Test
+    public void color_packedValues() {
+        Color color = Color.rgb(0x12, 0x34, 0x56);
+        Assert.assertEquals(0x123456, color.getRGB());
+        Assert.assertEquals(0xff123456, color.getARGB());
+        Assert.assertEquals(0x12, color.getRed());
+        Assert.assertEquals(0x34, color.getGreen());
+        Assert.assertEquals(0x56, color.getBlue());
+        Assert.assertEquals(255, color.getAlpha());
+        Assert.assertEquals("#123456", color.toHex());
+        Assert.assertSame(color.toHex(), color.toHex());
+        Assert.assertEquals(color, Color.fromHex("#123456"));
+        Assert.assertEquals(color.hashCode(),
+                Color.fromHex("#123456").hashCode());
+        Assert.assertNotEquals(color, Color.rgba(0x12, 0x34, 0x56, 0x80));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void color_channelOutOfRange() {
+        Color.rgb(256, 0, 0);
+    }
+
+    @Test
+    public void setColorValue_valueIsSet() {
+        ColorPicker colorPicker = new ColorPicker();
+        colorPicker.setColorValue(Color.of(0xff0000));
+        Assert.assertEquals("#ff0000", colorPicker.getValue());
+        Assert.assertEquals(Color.of(0xff0000), colorPicker.getColorValue());
+        colorPicker.setColorValue(null);
+        Assert.assertNull(colorPicker.getColorValue());
+    }
+
+    @Test
+    public void htmlSanitizer_resultIsCached() {
+        HtmlSanitizer sanitizer = new HtmlSanitizer(
+                HtmlSanitizer.defaultSafelist());
+        String sanitized = sanitizer.sanitize("<b>Color</b>");
+        Assert.assertEquals("<b>Color</b>", sanitized);
+        Assert.assertSame(sanitized, sanitizer.sanitize("<b>Color</b>"));
+    }
+
+    @Test
+    public void htmlSanitizer_customSafelist() {
+        HtmlSanitizer original = HtmlSanitizer.getDefault();
+        try {
+            HtmlSanitizer.setDefault(new HtmlSanitizer(Safelist.none(), 0));
+            ColorPreset preset = new ColorPreset("#ffffff",
+                    "<b>Color 3</b>", CaptionMode.HTML);
+            Assert.assertEquals("Color 3", preset.getCaption());
+        } finally {
+            HtmlSanitizer.setDefault(original);
+        }
+    }
+
+    @Test
+    public void setPresetCatalog_catalogIdIsSet() {
+        PresetCatalog catalog = PresetCatalog.of(
+                Arrays.asList(new ColorPreset("#00ff00", "Color 1"),
+                        new ColorPreset("#ff0000", "Color 2")));
+        ColorPicker colorPicker = new ColorPicker();
+        colorPicker.setPresets(
+                Arrays.asList(new ColorPreset("#0000ff", "Color 3")));
+        colorPicker.setPresetsCatalog(catalog);
+        Assert.assertEquals(catalog.getId(),
+                colorPicker.getElement().getProperty("catalog"));
+        Assert.assertNull(colorPicker.getElement().getPropertyRaw("presets"));
+
+        colorPicker.setPresets(
+                Arrays.asList(new ColorPreset("#0000ff", "Color 3")));
+        Assert.assertNull(colorPicker.getElement().getProperty("catalog"));
+    }
+
+    @Test
+    public void presetCatalog_idIsContentHash() {
+        PresetCatalog catalog1 = PresetCatalog.of(
+                Arrays.asList(new ColorPreset("#00ff00", "Color 1")));
+        PresetCatalog catalog2 = PresetCatalog.of(
+                Arrays.asList(new ColorPreset("#00ff00", "Color 1")));
+        PresetCatalog catalog3 = PresetCatalog.of(
+                Arrays.asList(new ColorPreset("#00ff00", "Color 2")));
+        Assert.assertEquals(catalog1.getId(), catalog2.getId());
+        Assert.assertSame(catalog1, catalog2);
+        Assert.assertNotEquals(catalog1.getId(), catalog3.getId());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void presetCatalog_isImmutable() {
+        PresetCatalog catalog = PresetCatalog.of(
+                Arrays.asList(new ColorPreset("#00ff00", "Color 1")));
+        catalog.getPresets().add(new ColorPreset("#ff0000", "Color 2"));
+    }
+
+    @Test
+    public void presetCatalog_equalCatalog_remainsRegistered()
+            throws Exception {
+        PresetCatalog first = PresetCatalog.of(
+                Arrays.asList(new ColorPreset("#00ff00", "Registered 1")));
+        PresetCatalog second = PresetCatalog.of(
+                Arrays.asList(new ColorPreset("#00ff00", "Registered 1")));
+        String id = second.getId();
+        WeakReference<PresetCatalog> reference = new WeakReference<>(first);
+        first = null;
+        for (int i = 0; i < 10 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertSame(second, PresetCatalog.find(id));
+
+        // A catalog created after the previous one was collected is found
+        reference = new WeakReference<>(second);
+        second = null;
+        for (int i = 0; i < 10 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        PresetCatalog third = PresetCatalog.of(
+                Arrays.asList(new ColorPreset("#00ff00", "Registered 1")));
+        Assert.assertSame(third, PresetCatalog.find(id));
+    }
+
+    @Test
+    public void setPresetsDataProvider_lazyPropertyIsSet() {
+        ColorPicker colorPicker = new ColorPicker();
+        colorPicker.setPresets(
+                Arrays.asList(new ColorPreset("#0000ff", "Color 3")));
+        DataProvider<ColorPreset, String> dataProvider = DataProvider
+                .fromFilteringCallbacks(query -> Stream.empty(),
+                        query -> 0);
+        colorPicker.setPresetsDataProvider(dataProvider);
+        Assert.assertTrue(
+                colorPicker.getElement().getProperty("lazy", false));
+        Assert.assertNull(colorPicker.getElement().getPropertyRaw("presets"));
+        Assert.assertSame(dataProvider, colorPicker.getPresetsDataProvider());
+
+        colorPicker.setPresets(
+                Arrays.asList(new ColorPreset("#0000ff", "Color 3")));
+        Assert.assertFalse(
+                colorPicker.getElement().getProperty("lazy", false));
+        Assert.assertNull(colorPicker.getPresetsDataProvider());
+    }
+
+    @Test
+    public void colorPresetTextCaption() {
+        ColorPreset preset = new ColorPreset("#ffffff",
+                "<b>Color</b> <i>3</i>", CaptionMode.HTML);
+        Assert.assertEquals("Color 3", preset.getTextCaption());
+        preset.setCaptionMode(CaptionMode.TEXT);
+        Assert.assertEquals(preset.getCaption(), preset.getTextCaption());
+        preset = new ColorPreset("#ffffff", "<b>Color</b>");
+        Assert.assertEquals("<b>Color</b>", preset.getTextCaption());
+
+        ColorPicker colorPicker = new ColorPicker();
+        colorPicker.setPresets(Arrays.asList(new ColorPreset("#ffffff",
+                "<b>Color</b> 3", CaptionMode.HTML)));
+        JsonArray presetsJson = (JsonArray) colorPicker.getElement()
+                .getPropertyRaw("presets");
+        JsonObject colorJson = presetsJson.get(0);
+        Assert.assertEquals("Color 3", colorJson.getString("textCaption"));
+    }
+
+    @Test
+    public void valueChangeMode_propertiesAreSet() {
+        ColorPicker colorPicker = new ColorPicker();
+        Assert.assertEquals(ValueChangeMode.ON_CHANGE,
+                colorPicker.getValueChangeMode());
+        colorPicker.setValueChangeMode(ValueChangeMode.LAZY);
+        colorPicker.setValueChangeTimeout(200);
+        Assert.assertEquals(ValueChangeMode.LAZY,
+                colorPicker.getValueChangeMode());
+        Assert.assertEquals(200, colorPicker.getValueChangeTimeout());
+        Assert.assertEquals("lazy",
+                colorPicker.getElement().getProperty("valueChangeMode"));
+        Assert.assertEquals(200, colorPicker.getElement()
+                .getProperty("valueChangeTimeout", 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bindPreviewTo_emptyProperty_throws() {
+        ColorPicker colorPicker = new ColorPicker();
+        colorPicker.bindPreviewTo(new Div(), "");
+    }
+
+    @Test
+    public void bindPreviewTo_registrationCanBeRemoved() {
+        ColorPicker colorPicker = new ColorPicker();
+        Registration registration = colorPicker.bindPreviewTo(new Div(),
+                "--preview-color");
+        registration.remove();
+        registration.remove();
+    }
+
+    @Test
+    public void contrastRequirement_validated() {
+        ColorPicker colorPicker = new ColorPicker();
+        colorPicker.setContrastRequirement(Color.rgb(255, 255, 255), 4.5);
+        Assert.assertFalse(colorPicker.getDefaultValidator()
+                .apply("#767676", null).isError());
+        Assert.assertTrue(colorPicker.getDefaultValidator()
+                .apply("#777777", null).isError());
+        Assert.assertFalse(
+                colorPicker.getDefaultValidator().apply(null, null).isError());
+        colorPicker.setContrastRequirement(null, 0);
+        Assert.assertFalse(colorPicker.getDefaultValidator()
+                .apply("#ffffff", null).isError());
+    }
+
+    @Test
+    public void colorContrast() {
+        Assert.assertEquals(21, ColorContrast.contrastRatio(0x000000, 0xffffff),
+                0.001);
+        Assert.assertEquals(106.04,
+                ColorContrast.apcaContrast(0x000000, 0xffffff), 0.01);
+        Assert.assertEquals(-107.88,
+                ColorContrast.apcaContrast(0xffffff, 0x000000), 0.01);
+        Assert.assertEquals(Color.fromHex("#767676"),
+                ColorContrast.nearestCompliant(Color.fromHex("#777777"),
+                        Color.fromHex("#ffffff"), 4.5));
+    }
+
+    @Test
+    public void compactPresets_encodedPropertyIsSet() {
+        ColorPicker colorPicker = new ColorPicker();
+        colorPicker.setCompactPresets(true);
+        colorPicker.setPresets(Arrays.asList(
+                new ColorPreset("#00ff00", "Color 1"),
+                new ColorPreset("#ff0000", "<b>Color 2</b>",
+                        CaptionMode.HTML),
+                new ColorPreset("#0102FF", "Color 3")));
+        Assert.assertNull(colorPicker.getElement().getPropertyRaw("presets"));
+        JsonObject json = (JsonObject) colorPicker.getElement()
+                .getPropertyRaw("compactPresets");
+        Assert.assertEquals(1, (int) json.getNumber("v"));
+        Assert.assertEquals(3, (int) json.getNumber("size"));
+        Assert.assertArrayEquals(
+                new byte[] { 0, (byte) 0xff, 0, (byte) 0xff, 0, 0, 1, 2,
+                        (byte) 0xff },
+                Base64.getDecoder().decode(json.getString("colors")));
+        JsonArray captions = json.getArray("captions");
+        Assert.assertEquals(3, captions.length());
+        Assert.assertEquals("<b>Color 2</b>", captions.getString(1));
+        Assert.assertArrayEquals(new byte[] { 0b010 },
+                Base64.getDecoder().decode(json.getString("html")));
+        JsonArray texts = json.getArray("texts");
+        Assert.assertEquals(1, texts.length());
+        Assert.assertEquals("Color 2", texts.getString(0));
+        JsonObject raw = json.getObject("raw");
+        Assert.assertArrayEquals(new String[] { "2" }, raw.keys());
+        Assert.assertEquals("#0102FF", raw.getString("2"));
+    }
+
+    @Test
+    public void compactPresets_toggled_propertiesAreSwapped() {
+        ColorPicker colorPicker = new ColorPicker();
+        colorPicker.setPresets(
+                Arrays.asList(new ColorPreset("#00ff00", "Color 1")));
+        colorPicker.setCompactPresets(true);
+        Assert.assertTrue(colorPicker.isCompactPresets());
+        Assert.assertNull(colorPicker.getElement().getPropertyRaw("presets"));
+        Assert.assertNotNull(
+                colorPicker.getElement().getPropertyRaw("compactPresets"));
+
+        colorPicker.setCompactPresets(false);
+        Assert.assertNull(
+                colorPicker.getElement().getPropertyRaw("compactPresets"));
+        Assert.assertEquals(1, ((JsonArray) colorPicker.getElement()
+                .getPropertyRaw("presets")).length());
+    }
+
+    @Test
+    public void clientTimingListener_propertyIsToggled() {
+        ColorPicker colorPicker = new ColorPicker();
+        Registration first = colorPicker.addClientTimingListener(e -> {
+        });
+        Registration second = colorPicker.addClientTimingListener(e -> {
+        });
+        Assert.assertTrue(
+                colorPicker.getElement().getProperty("clientTiming", false));
+        first.remove();
+        Assert.assertTrue(
+                colorPicker.getElement().getProperty("clientTiming", false));
+        second.remove();
+        Assert.assertFalse(
+                colorPicker.getElement().getProperty("clientTiming", true));
+    }
+
+    @Test
+    public void clientTimingEvent_timingsAreParsed() {
+        ColorPicker colorPicker = new ColorPicker();
+        AtomicReference<ClientTimingEvent> received = new AtomicReference<>();
+        colorPicker.addClientTimingListener(received::set);
+        JsonObject render = Json.createObject();
+        render.put("count", 4);
+        render.put("total", 10);
+        render.put("max", 5.5);
+        JsonObject timings = Json.createObject();
+        timings.put("render", render);
+        JsonObject detail = Json.createObject();
+        detail.put("timings", timings);
+        detail.put("hardwareConcurrency", 8);
+        detail.put("deviceMemory", 4);
+        ComponentUtil.fireEvent(colorPicker,
+                new ClientTimingEvent(colorPicker, true, detail));
+
+        ClientTimingEvent event = received.get();
+        Assert.assertNotNull(event);
+        Assert.assertEquals(8, event.getHardwareConcurrency());
+        Assert.assertEquals(4, event.getDeviceMemory(), 0);
+        Assert.assertEquals(1, event.getTimings().size());
+        ClientTimingEvent.Timing timing = event.getTimings().get("render");
+        Assert.assertEquals(4, timing.getCount());
+        Assert.assertEquals(10, timing.getTotalMillis(), 0);
+        Assert.assertEquals(5.5, timing.getMaxMillis(), 0);
+        Assert.assertEquals(2.5, timing.getAverageMillis(), 0);
+    }
+
+    @Test
+    public void colorPresetSerialized_sizePerPreset() throws Exception {
+        ArrayList<ColorPreset> presets = new ArrayList<>();
+        for (int i = 0; i < 1001; i++) {
+            presets.add(new ColorPreset(String.format("#%06x", i * 7919),
+                    "Color " + (1000 + i)));
+        }
+        int first = serialize(new ArrayList<>(presets.subList(0, 1))).length;
+        double perPreset = (serialize(presets).length - first) / 1000.0;
+        // 14 bytes of object and packed color, 13 bytes of caption string,
+        // the default serialized form took 39 bytes
+        Assert.assertEquals(27, perPreset, 0);
+    }
+
+    @Test
+    public void colorPresetSerialized_isRestored() throws Exception {
+        ColorPreset text = new ColorPreset("#00ff00", "Color 1");
+        ColorPreset html = new ColorPreset("#ABCDEF", "<b>Color</b> 2",
+                CaptionMode.HTML);
+        ColorPreset[] restored = (ColorPreset[]) deserialize(
+                serialize(new ColorPreset[] { text, html }));
+        for (int i = 0; i < restored.length; i++) {
+            ColorPreset preset = i == 0 ? text : html;
+            Assert.assertEquals(preset.getColor(), restored[i].getColor());
+            Assert.assertEquals(preset.getCaption(),
+                    restored[i].getCaption());
+            Assert.assertEquals(preset.getTextCaption(),
+                    restored[i].getTextCaption());
+            Assert.assertEquals(preset.getCaptionMode(),
+                    restored[i].getCaptionMode());
+        }
+    }
+
+    @Test
+    public void presetCatalogSerialized_isShared() throws Exception {
+        PresetCatalog catalog = PresetCatalog.of(
+                Arrays.asList(new ColorPreset("#00ff00", "Shared 1"),
+                        new ColorPreset("#ff0000", "Shared 2")));
+        // Deserialized catalog is replaced with the one in memory
+        Assert.assertSame(catalog, deserialize(serialize(catalog)));
+        ColorPicker colorPicker = new ColorPicker();
+        colorPicker.setPresetsCatalog(catalog);
+        deserialize(serialize(colorPicker));
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes)
+            throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+    @Test
+    public void colorPresetOf_isShared() throws Exception {
+        ColorPreset preset = ColorPreset.of("#00ff00", "Interned 1",
+                CaptionMode.TEXT);
+        Assert.assertTrue(preset.isInterned());
+        Assert.assertSame(preset, ColorPreset.of(new String("#00ff00"),
+                new String("Interned 1"), CaptionMode.TEXT));
+        Assert.assertNotSame(preset,
+                ColorPreset.of("#00ff00", "Interned 1", CaptionMode.HTML));
+        Assert.assertNotSame(preset,
+                ColorPreset.of("#00ff01", "Interned 1", CaptionMode.TEXT));
+        Assert.assertSame(preset, deserialize(serialize(preset)));
+
+        ColorPreset mutable = new ColorPreset("#00ff00", "Interned 1");
+        Assert.assertFalse(mutable.isInterned());
+        Assert.assertNotSame(mutable, deserialize(serialize(mutable)));
+    }
+
+    @Test
+    public void colorPresetOf_isImmutable() {
+        ColorPreset preset = ColorPreset.of("#00ff00", "Interned 2",
+                CaptionMode.TEXT);
+        try {
+            preset.setColor("#ff0000");
+            Assert.fail("Interned preset should be immutable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            preset.setCaption("Changed");
+            Assert.fail("Interned preset should be immutable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            preset.setCaptionMode(CaptionMode.HTML);
+            Assert.fail("Interned preset should be immutable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        Assert.assertEquals("#00ff00", preset.getColor());
+        Assert.assertEquals("Interned 2", preset.getCaption());
+    }
+
+    @Test
+    public void colorPresetJson_keysAreUnchanged() {
+        ColorPicker colorPicker = new ColorPicker();
+        colorPicker.setPresets(Arrays.asList(
+                new ColorPreset("#00ff00", "Color 1"),
+                ColorPreset.of("#ff0000", "Interned 3", CaptionMode.TEXT)));
+        JsonArray presetsJson = (JsonArray) colorPicker.getElement()
+                .getPropertyRaw("presets");
+        for (int i = 0; i < presetsJson.length(); i++) {
+            JsonObject presetJson = presetsJson.getObject(i);
+            Assert.assertEquals(
+                    new HashSet<>(Arrays.asList("color", "caption",
+                            "captionMode", "textCaption")),
+                    new HashSet<>(Arrays.asList(presetJson.keys())));
+        }
+    }
+
+    @Test
+    public void addThemeVariant_swatchGrid_themeNamesContainsThemeVariant() {
+        ColorPicker colorPicker = new ColorPicker();
+        colorPicker.addThemeVariants(ColorPickerVariant.LUMO_SMALL);
+        colorPicker.addThemeVariants(ColorPickerVariant.SWATCH_GRID);
+
+        ThemeList themeNames = colorPicker.getThemeNames();
+        Assert.assertTrue(themeNames
+                .contains(ColorPickerVariant.SWATCH_GRID.getVariantName()));
+    }
+}
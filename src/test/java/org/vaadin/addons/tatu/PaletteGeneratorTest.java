@@ -0,0 +1,82 @@
+package org.vaadin.addons.tatu;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.vaadin.addons.tatu.ColorPicker.ColorPreset;
+import org.vaadin.addons.tatu.PaletteGenerator.Harmony;
+
+public class PaletteGeneratorTest {
+
+    private final Color seed = Color.fromHex("#3366ff");
+
+    @Test
+    public void tonalScale_lightToDark() {
+        List<ColorPreset> scale = PaletteGenerator.tonalScale(seed, 5);
+        Assert.assertEquals(5, scale.size());
+        double previous = 2;
+        for (ColorPreset preset : scale) {
+            double luminance = ColorContrast.relativeLuminance(
+                    Color.fromHex(preset.getColor()).getRGB());
+            Assert.assertTrue(luminance < previous);
+            Assert.assertEquals(preset.getColor(), preset.getCaption());
+            previous = luminance;
+        }
+    }
+
+    @Test
+    public void tonalScale_deterministicAndNotShared() {
+        List<ColorPreset> first = PaletteGenerator.tonalScale(seed, 7);
+        List<ColorPreset> second = PaletteGenerator.tonalScale(seed, 7);
+        Assert.assertNotSame(first.get(0), second.get(0));
+        for (int i = 0; i < first.size(); i++) {
+            Assert.assertEquals(first.get(i).getColor(),
+                    second.get(i).getColor());
+        }
+    }
+
+    @Test
+    public void tonalScales_multipleSeeds() {
+        Assert.assertEquals(6, PaletteGenerator.tonalScales(
+                Arrays.asList(seed, Color.fromHex("#ff0000")), 3).size());
+    }
+
+    @Test
+    public void harmony_seedFirst() {
+        List<ColorPreset> triadic = PaletteGenerator.harmony(seed,
+                Harmony.TRIADIC);
+        Assert.assertEquals(3, triadic.size());
+        Assert.assertEquals("#3366ff", triadic.get(0).getColor());
+        Assert.assertEquals(2, PaletteGenerator
+                .harmony(seed, Harmony.COMPLEMENTARY).size());
+    }
+
+    @Test
+    public void materialTones() {
+        List<ColorPreset> tones = PaletteGenerator.materialTones(seed);
+        Assert.assertEquals(13, tones.size());
+        Assert.assertEquals("#000000", tones.get(0).getColor());
+        Assert.assertEquals("Tone 40", tones.get(4).getCaption());
+        Assert.assertEquals("#ffffff", tones.get(12).getColor());
+    }
+
+    @Test
+    public void materialTones_toneIsCieLightness() {
+        List<ColorPreset> tones = PaletteGenerator.materialTones(seed);
+        int[] expected = { 10, 20, 30, 40, 50, 60, 70, 80, 90, 95, 99 };
+        float[] lab = new float[3];
+        for (int i = 0; i < expected.length; i++) {
+            ColorConversions.rgbToLab(
+                    Color.fromHex(tones.get(i + 1).getColor()).getRGB(), lab,
+                    0);
+            Assert.assertEquals(expected[i], lab[0], 0.5);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tonalScale_tooFewSteps() {
+        PaletteGenerator.tonalScale(seed, 1);
+    }
+}
@@ -0,0 +1,72 @@
+package org.vaadin.addons.tatu;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.vaadin.addons.tatu.ColorPicker.CaptionMode;
+import org.vaadin.addons.tatu.ColorPicker.ColorPreset;
+
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.router.BeforeEnterEvent;
+import com.vaadin.flow.router.BeforeEnterObserver;
+import com.vaadin.flow.router.QueryParameters;
+import com.vaadin.flow.router.Route;
+
+/**
+ * View used by {@link ColorPickerPerformanceIT}. The picker is added when the
+ * render button is clicked, so that the time to render it can be measured.
+ * Query parameters: count of presets, mode TEXT or HTML of the captions, and
+ * lazy=true to load the presets lazily.
+ */
+@Route("performance")
+public class PerformanceView extends VerticalLayout
+        implements BeforeEnterObserver {
+
+    private int count = 100;
+    private CaptionMode mode = CaptionMode.TEXT;
+    private boolean lazy;
+
+    public PerformanceView() {
+        Button render = new Button("Render");
+        render.setId("render");
+        render.addClickListener(event -> {
+            ColorPicker colorPicker = new ColorPicker();
+            colorPicker.setId("picker");
+            colorPicker.setLabel("Color");
+            List<ColorPreset> presets = createPresets(count, mode);
+            if (lazy) {
+                colorPicker.setPresetsIndex(new PresetIndex(presets));
+            } else {
+                colorPicker.setPresets(presets);
+            }
+            add(colorPicker);
+        });
+        add(render);
+    }
+
+    @Override
+    public void beforeEnter(BeforeEnterEvent event) {
+        QueryParameters parameters = event.getLocation().getQueryParameters();
+        parameters.getParameters().getOrDefault("count", List.of())
+                .forEach(value -> count = Integer.parseInt(value));
+        parameters.getParameters().getOrDefault("mode", List.of())
+                .forEach(value -> mode = CaptionMode.valueOf(value));
+        parameters.getParameters().getOrDefault("lazy", List.of())
+                .forEach(value -> lazy = Boolean.parseBoolean(value));
+    }
+
+    private static List<ColorPreset> createPresets(int count,
+            CaptionMode mode) {
+        List<ColorPreset> presets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String color = String.format("#%06x",
+                    (i * 2654435761L) & 0xffffff);
+            String caption = mode == CaptionMode.HTML
+                    ? "<b>Color</b> <i>" + i + "</i>"
+                    : "Color " + i;
+            presets.add(new ColorPreset(color, caption, mode));
+        }
+        return presets;
+    }
+}
@@ -0,0 +1,95 @@
+package org.vaadin.addons.tatu;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.vaadin.addons.tatu.ColorPicker.CaptionMode;
+import org.vaadin.addons.tatu.ColorPicker.ColorPreset;
+
+import com.vaadin.flow.data.provider.Query;
+
+public class PresetIndexTest {
+
+    private final PresetIndex index = new PresetIndex(Arrays.asList(
+            new ColorPreset("#ff0000", "Signal Red"),
+            new ColorPreset("#00ff00", "Green"),
+            new ColorPreset("#ff8800", "<b>Orange</b> red",
+                    CaptionMode.HTML)));
+
+    @Test
+    public void filter_captionPrefix() {
+        assertColors(index.filter("re"), "#ff0000", "#ff8800");
+        assertColors(index.filter("RED sig"), "#ff0000");
+        assertColors(index.filter("orange"), "#ff8800");
+        assertColors(index.filter("b"));
+    }
+
+    @Test
+    public void filter_hexPrefix() {
+        assertColors(index.filter("#ff"), "#ff0000", "#ff8800");
+        assertColors(index.filter("#FF8"), "#ff8800");
+        assertColors(index.filter("#ff00001"));
+    }
+
+    @Test
+    public void filter_emptyMatchesAll() {
+        Assert.assertEquals(3, index.filter(null).size());
+        Assert.assertEquals(3, index.filter(" ").size());
+    }
+
+    @Test
+    public void dataProvider_pagesAreFiltered() {
+        Assert.assertEquals(2,
+                index.getDataProvider().size(new Query<>("red")));
+        List<ColorPreset> page = index.getDataProvider()
+                .fetch(new Query<>(1, 10, Collections.emptyList(), null,
+                        "red"))
+                .collect(Collectors.toList());
+        assertColors(page, "#ff8800");
+    }
+
+    @Test
+    public void setPresetIndex_lazyPropertyIsSet() {
+        ColorPicker colorPicker = new ColorPicker();
+        colorPicker.setPresetsIndex(index);
+        Assert.assertTrue(
+                colorPicker.getElement().getProperty("lazy", false));
+        Assert.assertSame(index.getDataProvider(),
+                colorPicker.getPresetsDataProvider());
+    }
+
+    @Test
+    public void nearest_closestFirst() {
+        Assert.assertEquals("#ff0000",
+                index.nearest(Color.of(0xf01010)).getColor());
+        assertColors(index.nearest(Color.of(0xff7700), 2), "#ff8800",
+                "#ff0000");
+        Assert.assertEquals(3, index.nearest(Color.of(0), 10).size());
+        Assert.assertNull(new PresetIndex(Collections.emptyList())
+                .nearest(Color.of(0)));
+    }
+
+    @Test
+    public void snapToPresets_clientValueIsSnapped() {
+        ColorPicker colorPicker = new ColorPicker();
+        colorPicker.setPresets(index.getPresets());
+        colorPicker.setSnapToPresets(true);
+        colorPicker.setModelValue("#f01010", true);
+        Assert.assertEquals("#ff0000", colorPicker.getValue());
+        Assert.assertEquals("#ff0000",
+                colorPicker.getElement().getProperty("color"));
+
+        colorPicker.setValue("#f01010");
+        Assert.assertEquals("#f01010", colorPicker.getValue());
+    }
+
+    private static void assertColors(List<ColorPreset> presets,
+            String... colors) {
+        Assert.assertEquals(Arrays.asList(colors), presets.stream()
+                .map(ColorPreset::getColor).collect(Collectors.toList()));
+    }
+}